@@ -0,0 +1,235 @@
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+* A class that runs the same Pipeline over every PGM/PPM file in a directory on a fixed number of worker threads
+* each worker reads, transforms and saves one file at a time, so reading and writing on one thread overlaps with work on the others
+* files are handed out only while a worker is free or about to be, so at most twice as many files as workers are ever in memory
+* a file that fails is reported in the summary and the rest carry on
+* @author Aidan Grupac
+*/
+public class BatchProcessor{
+
+	/**
+	* a class representing the outcome of processing one file
+	*/
+	public static class Result{
+
+		/**
+		* the name of the input file
+		*/
+		private final String file;
+		/**
+		* the reason the file failed, or null if it succeeded
+		*/
+		private final String error;
+		/**
+		* how long the file took to read, process and save
+		*/
+		private final long millis;
+
+		/**
+		* a constructor that records the outcome of one file
+		* @param file the name of the input file
+		* @param error the reason it failed, or null
+		* @param millis how long it took
+		*/
+		private Result(String file, String error, long millis){
+
+			this.file = file;
+			this.error = error;
+			this.millis = millis;
+
+		}
+
+		/**
+		* a getter that returns whether the file was processed and saved
+		* @return true if it succeeded
+		*/
+		public boolean isSuccess(){
+
+			return error == null;
+
+		}
+
+		/**
+		* a method that describes the outcome in one line
+		* @return a String such as OK cat.pgm (12 ms)
+		*/
+		public String toString(){
+
+			if(error == null){
+				return "OK     " + file + " (" + millis + " ms)";
+			}
+			return "FAILED " + file + ": " + error;
+
+		}
+
+	}
+
+	/**
+	* the directory output files are written to, under the same names as their inputs
+	*/
+	private final Path outputDir;
+	/**
+	* the operations run on each file, as Pipeline takes them
+	*/
+	private final String[] operations;
+	/**
+	* the number of worker threads
+	*/
+	private final int threads;
+
+	/**
+	* a constructor that creates a BatchProcessor
+	* @param outputDir the directory output files are written to, created if needed
+	* @param operations the operations run on each file, each followed by its parameters
+	* @param threads the number of worker threads, at least 1
+	*/
+	public BatchProcessor(String outputDir, String[] operations, int threads){
+
+		if(threads < 1){
+			throw new IllegalArgumentException("Batch needs at least 1 thread.");
+		}
+		this.outputDir = Paths.get(outputDir);
+		this.operations = operations.clone();
+		this.threads = threads;
+
+	}
+
+	/**
+	* a method that lists the files a batch input names: every .pgm, .ppm and .pnm file of a directory, or the files of a directory matching a glob such as photos/*.pgm
+	* @param input a directory or a glob
+	* @return the matching files, sorted by name
+	* @throws IOException if the directory can't be read
+	*/
+	public static List<Path> listInputs(String input) throws IOException{
+
+		Path path = Paths.get(input);
+		Path dir;
+		String glob;
+		if(Files.isDirectory(path)){
+			dir = path;
+			glob = "*.{pgm,ppm,pnm}";
+		}
+		else{
+			dir = path.getParent() == null ? Paths.get(".") : path.getParent();
+			glob = path.getFileName().toString();
+		}
+
+		List<Path> files = new ArrayList<Path>();
+		try(DirectoryStream<Path> stream = Files.newDirectoryStream(dir, glob)){
+			for(Path file : stream){
+				if(Files.isRegularFile(file)){
+					files.add(file);
+				}
+			}
+		}
+		Collections.sort(files);
+		return files;
+
+	}
+
+	/**
+	* a method that processes every file and waits for all of them
+	* @param files the input files
+	* @return the outcome of each file, in the same order as files
+	* @throws IOException if the output directory can't be created
+	*/
+	public List<Result> run(List<Path> files) throws IOException{
+
+		Files.createDirectories(outputDir);
+
+		Result[] results = new Result[files.size()];
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		//backpressure: a file is only handed out once one of the 2*threads slots is free
+		Semaphore slots = new Semaphore(threads * 2);
+		try{
+			for(int i = 0; i < files.size(); i++){
+				slots.acquire();
+				final int index = i;
+				pool.execute(() -> {
+					try{
+						results[index] = process(files.get(index));
+					}
+					finally{
+						slots.release();
+					}
+				});
+			}
+		}
+		catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+		}
+		finally{
+			pool.shutdown();
+		}
+
+		try{
+			pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		}
+		catch(InterruptedException e){
+			pool.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+
+		List<Result> list = new ArrayList<Result>();
+		for(int i = 0; i < results.length; i++){
+			list.add(results[i] != null ? results[i] : new Result(files.get(i).getFileName().toString(), "not processed", 0));
+		}
+		return list;
+
+	}
+
+	/**
+	* a method that reads, transforms and saves one file, catching anything that goes wrong
+	* @param file the input file
+	* @return the outcome
+	*/
+	private Result process(Path file){
+
+		String name = file.getFileName().toString();
+		long start = System.nanoTime();
+		try{
+			Image input = Image.load(file.toString());
+			Pipeline pipeline = new Pipeline(input.getHeight(), input.getWidth(), operations, 0);
+			PnmWriter.write(pipeline.run(input), outputDir.resolve(name).toString(), PnmReader.isBinary(file.toString()));
+			return new Result(name, null, (System.nanoTime() - start) / 1000000);
+		}
+		catch(Exception e){
+			String message = e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+			return new Result(name, message, (System.nanoTime() - start) / 1000000);
+		}
+
+	}
+
+	/**
+	* a method that prints each outcome followed by totals
+	* @param results the outcomes
+	* @return the number of files that failed
+	*/
+	public static int printSummary(List<Result> results){
+
+		int failed = 0;
+		for(Result result : results){
+			System.out.println(result);
+			if(!result.isSuccess()){
+				failed++;
+			}
+		}
+		System.out.println(results.size() + " files, " + (results.size() - failed) + " succeeded, " + failed + " failed.");
+		return failed;
+
+	}
+
+}
@@ -0,0 +1,248 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+* Program that measures how long loading, transforming, compressing and saving take on generated images, and how much each allocates
+* results are printed as a table and written as JSON in the same shape as JMH's -rf json output so runs can be compared across versions
+* this is a plain timing loop, not JMH: every operation runs in this one JVM with no forks, so JIT and GC state carry over between benchmarks;
+* results are kept in a volatile field rather than a Blackhole; allocation is the per-thread allocated bytes of every live thread over the timed runs,
+* not JMH's GC profiler, and no error bounds are reported, so compare runs on the same machine and treat small differences as noise
+* usage: java Benchmark [--sizes 64,256,1024,4096,8K] [--warmup 2] [--iterations 5] [--out benchmark.json] [--dir tmpdir]
+* @author Aidan Grupac
+*/
+public class Benchmark{
+
+	/**
+	* an interface for one benchmarked operation
+	*/
+	private interface Operation{
+
+		/**
+		* a method that runs the operation once
+		* @param img the Image to work on, already loaded from file
+		* @param file the file img was loaded from
+		* @param output a scratch file the operation may write
+		* @return any result, kept so the work can't be skipped
+		* @throws IOException if a file can't be read or written
+		*/
+		Object run(Image img, String file, String output) throws IOException;
+
+	}
+
+	/**
+	* the names of the benchmarked operations, in the order they run
+	*/
+	private static final String[] NAMES = {"load", "scale2", "scaleHalf", "resizeBox", "resizeBicubic", "crop", "flipVertical", "flipHorizontal", "rotate90Copy", "rotate180Copy", "transposeCopy", "compress", "save", "saveBinary"};
+
+	/**
+	* the benchmarked operations, matching NAMES
+	* crop, flip and rotate return views in O(1), so each is copied to Tiles inside the timed region and measures the work a caller pays for
+	*/
+	private static final Operation[] OPERATIONS = {
+		(img, file, output) -> new Image(file),
+		(img, file, output) -> img.scale(2),
+		(img, file, output) -> img.scale(-2),
+		(img, file, output) -> img.resize(Math.max(4, img.getHeight() / 4), Math.max(4, img.getWidth() / 4), Resampler.Kernel.BOX),
+		(img, file, output) -> img.resize(Math.max(4, img.getHeight() / 4), Math.max(4, img.getWidth() / 4), Resampler.Kernel.BICUBIC),
+		(img, file, output) -> copy(img.crop(img.getHeight() / 4, img.getWidth() / 4, img.getHeight() / 2, img.getWidth() / 2)),
+		(img, file, output) -> copy(img.flip("vertical")),
+		(img, file, output) -> copy(img.flip("horizontal")),
+		(img, file, output) -> copy(img.rotate(90)),
+		(img, file, output) -> copy(img.rotate(180)),
+		(img, file, output) -> copy(img.transpose()),
+		(img, file, output) -> img.compress(true, true),
+		(img, file, output) -> {
+			PnmWriter.write(img, output, false);
+			return null;
+		},
+		(img, file, output) -> {
+			PnmWriter.write(img, output, true);
+			return null;
+		}
+	};
+
+	/**
+	* anything returned by an operation, so the JIT can't drop the work
+	*/
+	private static volatile Object sink;
+
+	/**
+	* Method that serves as driver - generates images, runs every operation on each and reports the results
+	* @param args the options described in the class comment
+	* @throws IOException if an image or the results can't be written
+	*/
+	public static void main(String[] args) throws IOException{
+
+		String sizes = "64,256,1024,4096,8K";
+		int warmup = 2;
+		int iterations = 5;
+		String out = "benchmark.json";
+		String dir = System.getProperty("java.io.tmpdir");
+		for(int i = 0; i + 1 < args.length; i += 2){
+			switch(args[i]){
+				case "--sizes": sizes = args[i+1]; break;
+				case "--warmup": warmup = Integer.parseInt(args[i+1]); break;
+				case "--iterations": iterations = Integer.parseInt(args[i+1]); break;
+				case "--out": out = args[i+1]; break;
+				case "--dir": dir = args[i+1]; break;
+				default: System.out.println("Unknown option " + args[i]); return;
+			}
+		}
+
+		List<String> results = new ArrayList<String>();
+		System.out.println(String.format(Locale.ROOT, "%-16s %-12s %-6s %12s %14s %12s", "benchmark", "size", "format", "ms/op", "alloc B/op", "alloc MB/s"));
+		for(String size : sizes.split(",")){
+			int height, width;
+			if(size.equalsIgnoreCase("8K")){
+				height = 4320;
+				width = 7680;
+			}
+			else{
+				height = width = Integer.parseInt(size);
+			}
+			for(boolean grayscale : new boolean[]{true, false}){
+				String format = grayscale ? "P2" : "P3";
+				String file = new File(dir, "bench-" + width + "x" + height + (grayscale ? ".pgm" : ".ppm")).getPath();
+				String output = new File(dir, "bench-out" + (grayscale ? ".pgm" : ".ppm")).getPath();
+				PnmWriter.write(generate(height, width, grayscale), file, false);
+				Image img = new Image(file);
+
+				for(int n = 0; n < NAMES.length; n++){
+					double[] measured = measure(OPERATIONS[n], img, file, output, warmup, iterations);
+					System.out.println(String.format(Locale.ROOT, "%-16s %-12s %-6s %12.3f %14.0f %12.1f",
+						NAMES[n], width + "x" + height, format, measured[0], measured[1], measured[1] / 1048576.0 / (measured[0] / 1000.0)));
+					results.add(json(NAMES[n], width + "x" + height, format, iterations, measured));
+				}
+
+				new File(file).delete();
+				new File(output).delete();
+			}
+		}
+
+		PrintWriter writer = new PrintWriter(out);
+		writer.println("[");
+		writer.println(String.join(",\n", results));
+		writer.println("]");
+		writer.close();
+		System.out.println("Results written to " + out);
+
+	}
+
+	/**
+	* Method that makes a view copy its Pixels into Tiles of its own, so benchmarks of views include the copy
+	* @param view the view
+	* @return view, no longer a view
+	*/
+	private static Image copy(Image view){
+
+		view.materialize();
+		return view;
+
+	}
+
+	/**
+	* Method that builds a deterministic image with smooth gradients and some noise, so compression finds some but not all repeats
+	* @param height the height of the Image
+	* @param width the width of the Image
+	* @param grayscale the color scheme of the Image
+	* @return a new Image
+	*/
+	private static Image generate(int height, int width, boolean grayscale){
+
+		Image img = new Image(height, width, grayscale);
+		int channels = img.getChannels();
+		int[] row = new int[width * channels];
+		long seed = 42;
+		for(int y = 0; y < height; y++){
+			for(int i = 0; i < row.length; i++){
+				seed = seed * 6364136223846793005L + 1442695040888963407L;
+				int noise = (int) (seed >>> 61);
+				row[i] = ((y / 8 + i / (8 * channels)) * (1 + i % channels) + noise) & 0xFF;
+			}
+			img.setSamples(y, 0, width, row);
+		}
+		return img;
+
+	}
+
+	/**
+	* Method that times an operation and counts the bytes allocated by every thread while it runs
+	* @param operation the operation
+	* @param img the loaded Image
+	* @param file the file img was loaded from
+	* @param output a scratch output file
+	* @param warmup the number of untimed runs
+	* @param iterations the number of timed runs
+	* @return the average milliseconds and bytes allocated per run
+	* @throws IOException if the operation fails
+	*/
+	private static double[] measure(Operation operation, Image img, String file, String output, int warmup, int iterations) throws IOException{
+
+		for(int i = 0; i < warmup; i++){
+			sink = operation.run(img, file, output);
+		}
+		System.gc();
+
+		long allocated = allocatedBytes();
+		long start = System.nanoTime();
+		for(int i = 0; i < iterations; i++){
+			sink = operation.run(img, file, output);
+		}
+		long elapsed = System.nanoTime() - start;
+		allocated = allocatedBytes() - allocated;
+		sink = null;
+
+		return new double[]{elapsed / 1e6 / iterations, (double) allocated / iterations};
+
+	}
+
+	/**
+	* Method that sums the bytes allocated so far by every live thread, including ParallelEngine's workers
+	* @return the total in bytes, or 0 if the JVM can't count allocations
+	*/
+	private static long allocatedBytes(){
+
+		java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if(!(threads instanceof com.sun.management.ThreadMXBean)){
+			return 0;
+		}
+		long[] bytes = ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(threads.getAllThreadIds());
+		long total = 0;
+		for(long b : bytes){
+			if(b > 0){
+				total += b;
+			}
+		}
+		return total;
+
+	}
+
+	/**
+	* Method that formats one result the way JMH does, with allocation figures as gc.alloc secondary metrics
+	* the benchmark is always single threaded, so in place of JMH's threads the ParallelEngine parallelism is given as parallelism
+	* @param name the operation
+	* @param size the dimensions, such as 64x64
+	* @param format P2 or P3
+	* @param iterations the number of timed runs
+	* @param measured the milliseconds and bytes per run
+	* @return a JSON object
+	*/
+	private static String json(String name, String size, String format, int iterations, double[] measured){
+
+		double rate = measured[1] / 1048576.0 / (measured[0] / 1000.0);
+		return String.format(Locale.ROOT,
+			"  {\"benchmark\": \"Benchmark.%s\", \"mode\": \"avgt\", \"parallelism\": %d, \"measurementIterations\": %d, "
+			+ "\"jvm\": \"%s\", \"params\": {\"size\": \"%s\", \"format\": \"%s\"}, "
+			+ "\"primaryMetric\": {\"score\": %.4f, \"scoreUnit\": \"ms/op\"}, "
+			+ "\"secondaryMetrics\": {\"gc.alloc.rate.norm\": {\"score\": %.1f, \"scoreUnit\": \"B/op\"}, "
+			+ "\"gc.alloc.rate\": {\"score\": %.3f, \"scoreUnit\": \"MB/sec\"}}}",
+			name, ParallelEngine.getParallelism(), iterations, System.getProperty("java.version"), size, format, measured[0], measured[1], rate);
+
+	}
+
+}
@@ -0,0 +1,376 @@
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+
+/**
+* A class that saves a CompressedImage as it is held in memory, rather than expanding it back into a PGM/PPM file, and loads it again
+* a file is a 32 byte header, the palette of distinct Pixels, the distinct Tiles as palette indexes, then the index of the Tile at every position
+* indexes take 1, 2 or 4 bytes, whichever is the fewest that can count the palette or the distinct Tiles
+* all numbers are big-endian, samples take one byte, or two when maxval is above 255
+* @author Aidan Grupac
+*/
+public class CompressedFile{
+
+	/**
+	* the bytes at the start of every file, "CIMG" in ASCII
+	*/
+	private static final int MAGIC = 0x43494D47;
+	/**
+	* the size of the header
+	*/
+	private static final int HEADER = 32;
+
+	/**
+	* a private constructor, CompressedFile only holds static helpers
+	*/
+	private CompressedFile(){
+
+	}
+
+	/**
+	* a method that writes a CompressedImage to a file, finding its distinct Tiles and Pixels if compress() didn't
+	* @param img the CompressedImage
+	* @param filename the name of the output file
+	* @return the number of bytes written
+	* @throws IOException if the file can't be written
+	*/
+	public static long write(CompressedImage img, String filename) throws IOException{
+
+		long start = Metrics.start();
+		boolean grayscale = img.isGrayscale();
+		int channels = grayscale ? 1 : 3;
+		Tile[] tiles = img.getTileArray();
+
+		//number the distinct Tiles and then the distinct Pixels in the order they first appear
+		TileDictionary dictionary = new TileDictionary(tiles.length);
+		IdentityHashMap<Tile, Integer> tileIndex = new IdentityHashMap<Tile, Integer>();
+		List<Tile> unique = new ArrayList<Tile>();
+		int[] map = new int[tiles.length];
+		for(int i = 0; i < tiles.length; i++){
+			Tile canonical = dictionary.intern(tiles[i]);
+			Integer index = tileIndex.get(canonical);
+			if(index == null){
+				index = unique.size();
+				tileIndex.put(canonical, index);
+				unique.add(canonical);
+			}
+			map[i] = index;
+		}
+
+		PixelPalette palette = new PixelPalette();
+		IdentityHashMap<Pixel, Integer> pixelIndex = new IdentityHashMap<Pixel, Integer>();
+		List<int[]> colors = new ArrayList<int[]>();
+		int[][] tilePixels = new int[unique.size()][16];
+		int[] samples = new int[16 * channels];
+		for(int t = 0; t < unique.size(); t++){
+			for(int r = 0; r < TileAddress.SIZE; r++){
+				unique.get(t).getSamples(r, 0, TileAddress.SIZE, samples, r * TileAddress.SIZE * channels);
+			}
+			for(int p = 0; p < 16; p++){
+				Pixel shared = grayscale ? palette.intern(samples[p]) : palette.intern(samples[p*3], samples[p*3+1], samples[p*3+2]);
+				Integer index = pixelIndex.get(shared);
+				if(index == null){
+					index = colors.size();
+					pixelIndex.put(shared, index);
+					colors.add(shared.getValue());
+				}
+				tilePixels[t][p] = index;
+			}
+		}
+
+		int sampleBytes = img.getMaxval() > 255 ? 2 : 1;
+		int pixelBytes = indexBytes(colors.size());
+		int tileBytes = indexBytes(unique.size());
+
+		try(FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)){
+			ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+			buffer.putInt(MAGIC).putInt(1).putInt(img.getHeight()).putInt(img.getWidth()).putInt(channels).putInt(img.getMaxval())
+				.putInt(colors.size()).putInt(unique.size());
+			long written = 0;
+			for(int[] color : colors){
+				for(int k = 0; k < channels; k++){
+					written += put(channel, buffer, color[k], sampleBytes);
+				}
+			}
+			for(int[] pixels : tilePixels){
+				for(int p = 0; p < 16; p++){
+					written += put(channel, buffer, pixels[p], pixelBytes);
+				}
+			}
+			for(int index : map){
+				written += put(channel, buffer, index, tileBytes);
+			}
+			written += drain(channel, buffer);
+			Metrics.add("write.bytes", written);
+			Metrics.add("write.pixels", (long) img.getHeight() * img.getWidth());
+			Metrics.stop("write", start);
+			return written;
+		}
+
+	}
+
+	/**
+	* a method that reads a file written by write() back into a CompressedImage whose equal Tiles and Pixels are shared objects
+	* @param filename the name of the file
+	* @return a new CompressedImage
+	* @throws IOException if the file can't be read or isn't a compressed image
+	*/
+	public static CompressedImage read(String filename) throws IOException{
+
+		try(FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)){
+			MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			int[] header = header(in);
+			int height = header[0], width = header[1], channels = header[2], maxval = header[3], colors = header[4], uniqueTiles = header[5];
+			boolean grayscale = channels == 1;
+			int sampleBytes = maxval > 255 ? 2 : 1;
+
+			Pixel[] palette = new Pixel[colors];
+			for(int i = 0; i < colors; i++){
+				if(grayscale){
+					palette[i] = new Pixel(get(in, sampleBytes));
+				}
+				else{
+					int r = get(in, sampleBytes), g = get(in, sampleBytes), b = get(in, sampleBytes);
+					palette[i] = new Pixel(r, g, b);
+				}
+			}
+
+			int pixelBytes = indexBytes(colors);
+			Tile[] unique = new Tile[uniqueTiles];
+			for(int t = 0; t < uniqueTiles; t++){
+				unique[t] = new Tile(grayscale, false);
+				for(int p = 0; p < 16; p++){
+					unique[t].setPixel(p >> 2, p & 3, palette[checked(get(in, pixelBytes), colors)]);
+				}
+			}
+
+			int tileBytes = indexBytes(uniqueTiles);
+			Tile[] tiles = new Tile[TileAddress.tileCount(height, width)];
+			for(int i = 0; i < tiles.length; i++){
+				tiles[i] = unique[checked(get(in, tileBytes), uniqueTiles)];
+			}
+
+			CompressedImage output = new CompressedImage(height, width, grayscale, maxval, tiles);
+			long bytesBefore = Image.estimateFootprint(height, width, grayscale, false);
+			long bytesAfter = 48 + 4L * tiles.length + (24 + 80) * (long) uniqueTiles + Pixel.footprint(grayscale) * colors;
+			output.setStats(new CompressionStats(tiles.length, uniqueTiles, 16L * tiles.length, colors, bytesBefore, bytesAfter));
+			return output;
+		}
+		catch(BufferUnderflowException e){
+			throw new IOException("Compressed image file is truncated.");
+		}
+
+	}
+
+	/**
+	* a method that reads a file written by write() straight into an Image with packed Tiles, without building the CompressedImage
+	* @param filename the name of the file
+	* @return a new Image
+	* @throws IOException if the file can't be read or isn't a compressed image
+	*/
+	public static Image readImage(String filename) throws IOException{
+
+		long start = Metrics.start();
+		try(FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)){
+			MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			int[] header = header(in);
+			int height = header[0], width = header[1], channels = header[2], maxval = header[3], colors = header[4], uniqueTiles = header[5];
+
+			int sampleBytes = maxval > 255 ? 2 : 1;
+			int[] palette = new int[colors * channels];
+			for(int i = 0; i < palette.length; i++){
+				palette[i] = get(in, sampleBytes);
+			}
+
+			//expand every distinct Tile to samples once, then copy them row by row into place
+			int pixelBytes = indexBytes(colors);
+			int[][] unique = new int[uniqueTiles][16 * channels];
+			for(int t = 0; t < uniqueTiles; t++){
+				for(int p = 0; p < 16; p++){
+					System.arraycopy(palette, checked(get(in, pixelBytes), colors) * channels, unique[t], p * channels, channels);
+				}
+			}
+
+			int tileBytes = indexBytes(uniqueTiles);
+			int across = TileAddress.tilesAcross(width);
+			int[] tileRow = new int[across];
+			Image output = new Image(height, width, channels == 1, channels == 1 || maxval <= 255);
+			output.setMaxval(maxval);
+			int[] row = new int[width * channels];
+			int rowSamples = TileAddress.SIZE * channels;
+			for(int y = 0; y < height; y++){
+				if((y & 3) == 0){
+					for(int i = 0; i < across; i++){
+						tileRow[i] = checked(get(in, tileBytes), uniqueTiles);
+					}
+				}
+				for(int i = 0; i < across; i++){
+					//the last Tile of a row may hang over the right edge
+					int count = Math.min(rowSamples, row.length - i * rowSamples);
+					System.arraycopy(unique[tileRow[i]], (y & 3) * rowSamples, row, i * rowSamples, count);
+				}
+				output.setSamples(y, 0, width, row);
+			}
+			Metrics.add("read.bytes", channel.size());
+			Metrics.add("read.pixels", (long) height * width);
+			Metrics.stop("read", start);
+			return output;
+		}
+		catch(BufferUnderflowException e){
+			throw new IOException("Compressed image file is truncated.");
+		}
+
+	}
+
+	/**
+	* a method that describes how a file written by write() compares with the same image saved as a binary PGM/PPM
+	* @param img the CompressedImage that was written
+	* @param bytes the size of the file written
+	* @return a String such as 1204 bytes, 8.52:1 against a 10253 byte P6 file
+	*/
+	public static String report(CompressedImage img, long bytes){
+
+		int channels = img.isGrayscale() ? 1 : 3;
+		long raster = (long) img.getHeight() * img.getWidth() * channels * (img.getMaxval() > 255 ? 2 : 1);
+		long pnm = ("P6\n" + img.getWidth() + " " + img.getHeight() + "\n" + img.getMaxval() + "\n").length() + raster;
+		return String.format(Locale.ROOT, "%d bytes, %.2f:1 against a %d byte %s file", bytes, (double) pnm / Math.max(1, bytes), pnm, img.isGrayscale() ? "P5" : "P6");
+
+	}
+
+	/**
+	* a method that reads and checks the header, including that the rest of the file is long enough for the sizes it gives,
+	* so a corrupt or hostile header can't make a reader allocate more than the file could fill
+	* @param in the file contents
+	* @return the height, width, channels, maxval, palette size and number of distinct Tiles
+	* @throws IOException if the header is not a valid compressed image header or the file is too short for it
+	*/
+	private static int[] header(ByteBuffer in) throws IOException{
+
+		if(in.remaining() < HEADER || in.getInt() != MAGIC || in.getInt() != 1){
+			throw new IOException("Not a compressed image file.");
+		}
+		int[] header = new int[6];
+		for(int i = 0; i < header.length; i++){
+			header[i] = in.getInt();
+		}
+		if(header[0] < 0 || header[1] < 0 || (header[2] != 1 && header[2] != 3) || header[3] < 1 || header[3] > 65535 || header[4] < 0 || header[5] < 0){
+			throw new IOException("Invalid compressed image header.");
+		}
+		long tiles = ((header[0] + 3L) / TileAddress.SIZE) * ((header[1] + 3L) / TileAddress.SIZE);
+		long body = (long) header[4] * header[2] * (header[3] > 255 ? 2 : 1)
+			+ (long) header[5] * 16 * indexBytes(header[4])
+			+ tiles * indexBytes(header[5]);
+		if(tiles > Integer.MAX_VALUE || body > in.remaining()){
+			throw new IOException("Compressed image file is truncated.");
+		}
+		return header;
+
+	}
+
+	/**
+	* a method that returns the fewest bytes an index below count fits in
+	* @param count the number of things indexed
+	* @return 1, 2 or 4
+	*/
+	private static int indexBytes(int count){
+
+		if(count <= 1 << 8){
+			return 1;
+		}
+		if(count <= 1 << 16){
+			return 2;
+		}
+		return 4;
+
+	}
+
+	/**
+	* a method that checks an index read from a file is in range
+	* @param index the index
+	* @param count the number of things indexed
+	* @return index
+	* @throws IOException if index is out of range
+	*/
+	private static int checked(int index, int count) throws IOException{
+
+		if(index < 0 || index >= count){
+			throw new IOException("Invalid index in compressed image file.");
+		}
+		return index;
+
+	}
+
+	/**
+	* a method that reads an unsigned big-endian number
+	* @param in the file contents
+	* @param bytes the size of the number, 1, 2 or 4
+	* @return the number
+	*/
+	private static int get(ByteBuffer in, int bytes){
+
+		if(bytes == 1){
+			return in.get() & 0xFF;
+		}
+		if(bytes == 2){
+			return in.getShort() & 0xFFFF;
+		}
+		return in.getInt();
+
+	}
+
+	/**
+	* a method that adds a big-endian number to the buffer, writing the buffer out first if it is full
+	* @param channel the file
+	* @param buffer the bytes waiting to be written
+	* @param value the number
+	* @param bytes the size of the number, 1, 2 or 4
+	* @return the number of bytes written to the file
+	* @throws IOException if the file can't be written
+	*/
+	private static long put(FileChannel channel, ByteBuffer buffer, int value, int bytes) throws IOException{
+
+		long written = 0;
+		if(buffer.remaining() < 4){
+			written = drain(channel, buffer);
+		}
+		if(bytes == 1){
+			buffer.put((byte) value);
+		}
+		else if(bytes == 2){
+			buffer.putShort((short) value);
+		}
+		else{
+			buffer.putInt(value);
+		}
+		return written;
+
+	}
+
+	/**
+	* a method that writes everything in the buffer to the file and empties it
+	* @param channel the file
+	* @param buffer the bytes waiting to be written
+	* @return the number of bytes written
+	* @throws IOException if the file can't be written
+	*/
+	private static long drain(FileChannel channel, ByteBuffer buffer) throws IOException{
+
+		long written = 0;
+		buffer.flip();
+		while(buffer.hasRemaining()){
+			written += channel.write(buffer);
+		}
+		buffer.clear();
+		return written;
+
+	}
+
+}
@@ -1,191 +1,288 @@
-/**
-* A class representing a single Image object, where operations are performed
-* @author Aidan Grupac
-*/
-public class CompressedImage{
-
-  /**
-  * an array of Tile objects
-  */
-  private Tile[] tileArray;
-  /**
-  * integers representing the height and width of the CompressedImage
-  */
-  private int width, height;
-  /**
-  * boolean representing whether CompressedImage is grayscale or not
-  */
-  private boolean grayscale;
-
-  /**
-  * a constructor that creates a CompressedImage with with defined dimensions and color scheme but undefined contents
-  * @param height the height of the CompressedImage
-  * @param width the width of the CompressedImage
-  * @param grayscale the color scheme of the CompressedImage
-  */
-  public CompressedImage(int height, int width, boolean grayscale){
-
-    this.height = height;
-    this.width = width;
-    this.grayscale = grayscale;
-    tileArray = new Tile[(height / 4) * (width / 4)];
-
-    //fill tileArray with empty tiles
-    for(int i = 0; i < tileArray.length; i++){
-      tileArray[i] = new Tile();
-    }
-
-  }
-
-  /**
-  * a getter that returns the width of a CompressedImage
-  * @return width the width of a CompressedImage
-  */
-  public int getWidth(){
-
-    return width;
-
-  }
-
-  /**
-  * a getter that returns the tileArray of a CompressedImage
-  * @return the tileArray of a CompressedImage
-  */
-  public Tile[] getTileArray(){
-
-    return tileArray;
-  }
-
-  /**
-  * a getter that returns the height of a CompressedImage
-  * @return height the height of a CompressedImage
-  */
-  public int getHeight(){
-
-    return height;
-  }
-
-  /**
-  * a getter that returns a Pixel at (y,x) coordinates of a CompressedImage
-  * @param y the row location within the CompressedImage
-  * @param x the column location within the CompressedImage
-  * @return the Pixel at coordinates (y,x)
-  */
-  public Pixel getPixel(int y, int x){
-
-    //holds indexes of tiles in image
-    int[][] coordPlane = new int[this.height / 4][this.width / 4];
-    int position, min, max, r, c, tileRow, tileCol;
-    position = min = max = r = c = tileRow = tileCol = 0;
-
-    //fill array with tile indexes
-    for(int row = 0; row < height/4; row++){
-      for(int column = 0; column < width/4; column++){
-        coordPlane[row][column] = position;
-        position++;
-      }
-    }
-    //calculate the coordinates relative to an individual tile
-    for(int row = 0; row < height; row++){
-      min = 4 * row;
-      max = 4 * (row + 1);
-      tileRow = y - min;
-      if(y >= min && y < max){
-        for(int column = 0; column < width; column++){
-          min = 4 * column;
-          max = 4 * (column + 1);
-          if(x >= min && x < max){
-            r = row;
-            c = column;
-            tileCol = x - min;
-            break;
-          }
-        }
-        break;
-      }
-    }
-
-    return tileArray[coordPlane[r][c]].getPixel(tileRow, tileCol);
-
-  }
-
-  /**
-  * a setter that replaces a Pixel at (y,x) coordinates of an CompressedImage with Pixel p
-  * @param y the row location within the CompressedImage
-  * @param x the column location within the CompressedImage
-  * @param p the Pixel to insert
-  */
-  public void setPixel(int y, int x, Pixel p){
-
-    //holds indexes of tiles in image
-    int[][] coordPlane = new int[this.getHeight() / 4][this.getWidth() / 4];
-    int position, min, max, r, c, tileRow, tileCol;
-    position = min = max = r = c = tileRow = tileCol = 0;
-
-    //fill array with tile indexes
-    for(int row = 0; row < this.height/4; row++){
-      for(int column = 0; column < this.width/4; column++){
-        coordPlane[row][column] = position;
-        position++;
-      }
-    }
-    //calculate the coordinates relative to an individual tile
-    for(int row = 0; row < height; row++){
-      min = 4 * row;
-      max = 4 * (row + 1);
-      tileRow = y - min;
-      if(y >= min && y < max){
-        for(int column = 0; column < width; column++){
-          min = 4 * column;
-          max = 4 * (column + 1);
-          if(x >= min && x < max){
-            r = row;
-            c = column;
-            tileCol = x - min;
-            break;
-          }
-        }
-        break;
-      }
-    }
-
-    int location = coordPlane[r][c];
-
-    //if tile doesn't exist, create new one
-    if(tileArray[location] == null){
-      tileArray[location] = new Tile();
-    }
-
-    tileArray[location].setPixel(tileRow, tileCol, p);
-
-  }
-
-  /**
-  * A method that checks if the current CompressedImage is equal to another Object - shares contents but not memory location
-  * @param other the Object to be compared
-  * @return true/false depending on equality
-  */
-  public boolean equals(Object other){
-
-    //check if other is instance of compressedimage
-    if(other instanceof CompressedImage){
-      CompressedImage compare = (CompressedImage) other;
-      //if tileArray lengths don't match
-      if(compare.tileArray.length != this.tileArray.length){
-        return false;
-      }
-      //if tileArray elements don't match
-      for(int i = 0; i < this.tileArray.length; i++){
-        if(!compare.tileArray[i].equals(this.tileArray[i])){
-          return false;
-        }
-        else{
-          return true;
-        }
-      }
-    }
-    return false;
-
-  }
-
-}
+/**
+* A class representing a single Image object, where operations are performed
+* @author Aidan Grupac
+*/
+public class CompressedImage implements SampleSource{
+
+  /**
+  * an array of Tile objects
+  */
+  private Tile[] tileArray;
+  /**
+  * integers representing the height and width of the CompressedImage
+  */
+  private int width, height;
+  /**
+  * boolean representing whether CompressedImage is grayscale or not
+  */
+  private boolean grayscale;
+  /**
+  * the largest value a sample of the CompressedImage may hold
+  */
+  private int maxval;
+  /**
+  * the statistics gathered when the CompressedImage was built by Image.compress(), null otherwise
+  */
+  private CompressionStats stats;
+
+  /**
+  * a constructor that creates a CompressedImage with with defined dimensions and color scheme but undefined contents
+  * @param height the height of the CompressedImage
+  * @param width the width of the CompressedImage
+  * @param grayscale the color scheme of the CompressedImage
+  */
+  public CompressedImage(int height, int width, boolean grayscale){
+
+    this(height, width, grayscale, 255);
+
+  }
+
+  /**
+  * a constructor that creates a CompressedImage with with defined dimensions, color scheme and maximum sample value but undefined contents
+  * @param height the height of the CompressedImage
+  * @param width the width of the CompressedImage
+  * @param grayscale the color scheme of the CompressedImage
+  * @param maxval the largest value a sample may hold
+  */
+  public CompressedImage(int height, int width, boolean grayscale, int maxval){
+
+    this.height = height;
+    this.width = width;
+    this.grayscale = grayscale;
+    this.maxval = maxval;
+    tileArray = new Tile[TileAddress.tileCount(height, width)];
+
+    //fill tileArray with empty tiles
+    for(int i = 0; i < tileArray.length; i++){
+      tileArray[i] = new Tile(grayscale, false);
+    }
+
+  }
+
+  /**
+  * a constructor used by CompressedFile.read() to create a CompressedImage around Tiles it has already shared out
+  * @param height the height of the CompressedImage
+  * @param width the width of the CompressedImage
+  * @param grayscale the color scheme of the CompressedImage
+  * @param maxval the largest value a sample may hold
+  * @param tileArray the Tiles, one per position, which the CompressedImage keeps
+  */
+  CompressedImage(int height, int width, boolean grayscale, int maxval, Tile[] tileArray){
+
+    this.height = height;
+    this.width = width;
+    this.grayscale = grayscale;
+    this.maxval = maxval;
+    this.tileArray = tileArray;
+
+  }
+
+  /**
+  * a getter that returns the width of a CompressedImage
+  * @return width the width of a CompressedImage
+  */
+  public int getWidth(){
+
+    return width;
+
+  }
+
+  /**
+  * a getter that returns the tileArray of a CompressedImage
+  * @return the tileArray of a CompressedImage
+  */
+  public Tile[] getTileArray(){
+
+    return tileArray;
+  }
+
+  /**
+  * a getter that returns the statistics gathered by Image.compress()
+  * @return stats the number of unique Tiles and Pixels and the heap saved, or null if not built by compress()
+  */
+  public CompressionStats getStats(){
+
+    return stats;
+  }
+
+  /**
+  * a setter used by Image.compress() to record its statistics
+  * @param stats the statistics of the compression
+  */
+  void setStats(CompressionStats stats){
+
+    this.stats = stats;
+  }
+
+  /**
+  * a getter that returns the height of a CompressedImage
+  * @return height the height of a CompressedImage
+  */
+  public int getHeight(){
+
+    return height;
+  }
+
+  /**
+  * a getter that returns whether a CompressedImage is grayscale
+  * @return grayscale the color scheme of a CompressedImage
+  */
+  public boolean isGrayscale(){
+
+    return grayscale;
+  }
+
+  /**
+  * a getter that returns the largest value a sample of a CompressedImage may hold
+  * @return maxval the maximum sample value
+  */
+  public int getMaxval(){
+
+    return maxval;
+  }
+
+  /**
+  * a getter that returns a Pixel at (y,x) coordinates of a CompressedImage
+  * @param y the row location within the CompressedImage
+  * @param x the column location within the CompressedImage
+  * @return the Pixel at coordinates (y,x)
+  */
+  public Pixel getPixel(int y, int x){
+
+    TileAddress.check(y, x, height, width);
+    return tileArray[TileAddress.tileIndex(y, x, width)].getPixel(y & 3, x & 3);
+
+  }
+
+  /**
+  * a setter that replaces a Pixel at (y,x) coordinates of an CompressedImage with Pixel p
+  * @param y the row location within the CompressedImage
+  * @param x the column location within the CompressedImage
+  * @param p the Pixel to insert
+  */
+  public void setPixel(int y, int x, Pixel p){
+
+    TileAddress.check(y, x, height, width);
+    int location = TileAddress.tileIndex(y, x, width);
+
+    //if tile doesn't exist, create new one
+    if(tileArray[location] == null){
+      tileArray[location] = new Tile(grayscale, false);
+    }
+
+    tileArray[location].setPixel(y & 3, x & 3, p);
+
+  }
+
+  /**
+  * a method that copies a run of Pixels from row y of a CompressedImage into an array, one Tile at a time
+  * @param y the row location within the CompressedImage
+  * @param x the starting column location within the CompressedImage
+  * @param length the number of Pixels to copy
+  * @param row the array receiving the Pixels, or null to allocate one
+  * @return row the array holding the Pixels
+  */
+  public Pixel[] getRow(int y, int x, int length, Pixel[] row){
+
+    if(row == null){
+      row = new Pixel[length];
+    }
+    if(length == 0){
+      return row;
+    }
+    TileAddress.check(y, x, height, width);
+    TileAddress.check(y, x + length - 1, height, width);
+
+    //walk across the tiles covering the run, copying up to 4 pixels from each
+    int base = TileAddress.tileIndex(y, 0, width);
+    int copied = 0;
+    while(copied < length){
+      int column = x + copied;
+      int count = Math.min(TileAddress.SIZE - (column & 3), length - copied);
+      tileArray[base + (column >> 2)].getRow(y & 3, column & 3, count, row, copied);
+      copied += count;
+    }
+
+    return row;
+
+  }
+
+  /**
+  * a method that copies the samples of a run of Pixels from row y of a CompressedImage into an array, one per grayscale Pixel or three per color Pixel
+  * @param y the row location within the CompressedImage
+  * @param x the starting column location within the CompressedImage
+  * @param length the number of Pixels to copy
+  * @param samples the array receiving the samples, or null to allocate one
+  * @return samples the array holding the samples
+  */
+  public int[] getSamples(int y, int x, int length, int[] samples){
+
+    int channels = grayscale ? 1 : 3;
+    if(samples == null){
+      samples = new int[length * channels];
+    }
+    if(length == 0){
+      return samples;
+    }
+    TileAddress.check(y, x, height, width);
+    TileAddress.check(y, x + length - 1, height, width);
+
+    int base = TileAddress.tileIndex(y, 0, width);
+    int copied = 0;
+    while(copied < length){
+      int column = x + copied;
+      int count = Math.min(TileAddress.SIZE - (column & 3), length - copied);
+      tileArray[base + (column >> 2)].getSamples(y & 3, column & 3, count, samples, copied * channels);
+      copied += count;
+    }
+
+    return samples;
+
+  }
+
+  /**
+  * A method that checks if the current CompressedImage is equal to another Object - shares contents but not memory location
+  * @param other the Object to be compared
+  * @return true/false depending on equality
+  */
+  public boolean equals(Object other){
+
+    //check if other is instance of compressedimage, then compare every tile
+    if(other instanceof CompressedImage){
+      return contentEquals((CompressedImage) other, false);
+    }
+    return false;
+
+  }
+
+  /**
+  * A method that checks if the current CompressedImage holds the same Pixel values as another, stopping at the first Tile that differs
+  * @param other the CompressedImage to be compared
+  * @param parallel whether to compare chunks of Tiles on several threads, worthwhile for very large CompressedImages
+  * @return true/false depending on equality
+  */
+  public boolean contentEquals(CompressedImage other, boolean parallel){
+
+    if(other == this){
+      return true;
+    }
+    //if dimensions or color scheme don't match
+    if(other.height != this.height || other.width != this.width || other.grayscale != this.grayscale || other.maxval != this.maxval){
+      return false;
+    }
+    //if tileArray elements don't match
+    return Tile.contentEquals(this.tileArray, other.tileArray, parallel);
+
+  }
+
+  /**
+  * A method that returns a hash code consistent with equals(), built from the dimensions and the hash codes of every Tile
+  * @return the hash code
+  */
+  public int hashCode(){
+
+    return 31 * (31 * height + width) + Tile.hashCode(tileArray);
+
+  }
+
+}
@@ -0,0 +1,121 @@
+/**
+* A class holding the results of Image.compress(): how many Tiles and Pixels remain distinct and how much heap that saves
+* @author Aidan Grupac
+*/
+public class CompressionStats{
+
+	/**
+	* integers representing the number of Tiles before and after compression
+	*/
+	private int tiles, uniqueTiles;
+	/**
+	* longs representing the number of Pixels before and after compression
+	*/
+	private long pixels, uniquePixels;
+	/**
+	* longs representing the estimated heap used before and after compression
+	*/
+	private long bytesBefore, bytesAfter;
+
+	/**
+	* a constructor that creates CompressionStats from counts gathered during compression
+	* @param tiles the number of Tiles in the CompressedImage
+	* @param uniqueTiles the number of distinct Tile objects after compression
+	* @param pixels the number of Pixels in the CompressedImage
+	* @param uniquePixels the number of distinct Pixel objects after compression
+	* @param bytesBefore the estimated heap used by the uncompressed copy
+	* @param bytesAfter the estimated heap used after compression
+	*/
+	public CompressionStats(int tiles, int uniqueTiles, long pixels, long uniquePixels, long bytesBefore, long bytesAfter){
+
+		this.tiles = tiles;
+		this.uniqueTiles = uniqueTiles;
+		this.pixels = pixels;
+		this.uniquePixels = uniquePixels;
+		this.bytesBefore = bytesBefore;
+		this.bytesAfter = bytesAfter;
+
+	}
+
+	/**
+	* a getter that returns the number of Tiles
+	* @return tiles the number of Tiles
+	*/
+	public int getTiles(){
+
+		return tiles;
+
+	}
+
+	/**
+	* a getter that returns the number of distinct Tile objects after compression
+	* @return uniqueTiles the number of distinct Tiles
+	*/
+	public int getUniqueTiles(){
+
+		return uniqueTiles;
+
+	}
+
+	/**
+	* a getter that returns the number of Pixels
+	* @return pixels the number of Pixels
+	*/
+	public long getPixels(){
+
+		return pixels;
+
+	}
+
+	/**
+	* a getter that returns the number of distinct Pixel objects after compression
+	* @return uniquePixels the number of distinct Pixels
+	*/
+	public long getUniquePixels(){
+
+		return uniquePixels;
+
+	}
+
+	/**
+	* a getter that returns the estimated heap used before compression
+	* @return bytesBefore the size in bytes
+	*/
+	public long getBytesBefore(){
+
+		return bytesBefore;
+
+	}
+
+	/**
+	* a getter that returns the estimated heap used after compression
+	* @return bytesAfter the size in bytes
+	*/
+	public long getBytesAfter(){
+
+		return bytesAfter;
+
+	}
+
+	/**
+	* a getter that returns the estimated heap saved by compression
+	* @return the difference in bytes
+	*/
+	public long getBytesSaved(){
+
+		return bytesBefore - bytesAfter;
+
+	}
+
+	/**
+	* a method that converts the statistics to a one line summary
+	* @return a String of the counts and sizes
+	*/
+	public String toString(){
+
+		return uniqueTiles + "/" + tiles + " unique tiles, " + uniquePixels + "/" + pixels + " unique pixels, "
+			+ bytesAfter + "/" + bytesBefore + " bytes (" + getBytesSaved() + " saved)";
+
+	}
+
+}
@@ -0,0 +1,196 @@
+/**
+* A class representing how the (y,x) coordinates of a view map onto the coordinates of the Image it was made from
+* a map is any combination of a translation, mirroring and a quarter turn: sourceY = yy*y + yx*x + y0, sourceX = xy*y + xx*x + x0
+* @author Aidan Grupac
+*/
+public class CoordinateMap{
+
+	/**
+	* the coefficients and offset giving the source row
+	*/
+	private final int yy, yx, y0;
+	/**
+	* the coefficients and offset giving the source column
+	*/
+	private final int xy, xx, x0;
+
+	/**
+	* a constructor that creates a CoordinateMap from its coefficients, each of which should be -1, 0 or 1
+	* @param yy how much the source row changes per row
+	* @param yx how much the source row changes per column
+	* @param y0 the source row of (0,0)
+	* @param xy how much the source column changes per row
+	* @param xx how much the source column changes per column
+	* @param x0 the source column of (0,0)
+	*/
+	public CoordinateMap(int yy, int yx, int y0, int xy, int xx, int x0){
+
+		this.yy = yy;
+		this.yx = yx;
+		this.y0 = y0;
+		this.xy = xy;
+		this.xx = xx;
+		this.x0 = x0;
+
+	}
+
+	/**
+	* a method that creates the map of a crop whose top left corner is (topY,topX)
+	* @param topY the starting row within the source
+	* @param topX the starting column within the source
+	* @return a new CoordinateMap
+	*/
+	public static CoordinateMap crop(int topY, int topX){
+
+		return new CoordinateMap(1, 0, topY, 0, 1, topX);
+
+	}
+
+	/**
+	* a method that creates the map of a mirror image
+	* @param vertical true to invert columns (upside down), false to invert rows (left to right)
+	* @param height the height of the source
+	* @param width the width of the source
+	* @return a new CoordinateMap
+	*/
+	public static CoordinateMap flip(boolean vertical, int height, int width){
+
+		if(vertical){
+			return new CoordinateMap(-1, 0, height - 1, 0, 1, 0);
+		}
+		return new CoordinateMap(1, 0, 0, 0, -1, width - 1);
+
+	}
+
+	/**
+	* a method that creates the map of a quarter turn
+	* @param clockwise the direction of the turn
+	* @param height the height of the source
+	* @param width the width of the source
+	* @return a new CoordinateMap
+	*/
+	public static CoordinateMap rotate(boolean clockwise, int height, int width){
+
+		//clockwise: row y of the result is column y of the source read bottom to top
+		if(clockwise){
+			return new CoordinateMap(0, -1, height - 1, 1, 0, 0);
+		}
+		//counterclockwise: row y of the result is column width-1-y of the source read top to bottom
+		return new CoordinateMap(0, 1, 0, -1, 0, width - 1);
+
+	}
+
+	/**
+	* a method that creates the map of a half turn
+	* @param height the height of the source
+	* @param width the width of the source
+	* @return a new CoordinateMap
+	*/
+	public static CoordinateMap rotateHalf(int height, int width){
+
+		return new CoordinateMap(-1, 0, height - 1, 0, -1, width - 1);
+
+	}
+
+	/**
+	* a method that creates the map of a mirror across the diagonal from the top left corner, so rows become columns
+	* @return a new CoordinateMap
+	*/
+	public static CoordinateMap transpose(){
+
+		return new CoordinateMap(0, 1, 0, 1, 0, 0);
+
+	}
+
+	/**
+	* a method that creates the map of a mirror across the diagonal from the top right corner
+	* @param height the height of the source
+	* @param width the width of the source
+	* @return a new CoordinateMap
+	*/
+	public static CoordinateMap transverse(int height, int width){
+
+		return new CoordinateMap(0, -1, height - 1, -1, 0, width - 1);
+
+	}
+
+	/**
+	* a method that returns the permutation of a 4x4 block this map applies, if every Tile of the view maps onto exactly one Tile of the source
+	* @return for each offset within a Tile of the view, the offset within the source Tile its Pixel comes from, or null if Tiles don't line up
+	*/
+	public int[] tileOrder(){
+
+		//every Tile lines up when the source rows and columns of the first one start on a Tile boundary
+		int top = Math.min(sourceY(0, 0), sourceY(TileAddress.SIZE - 1, TileAddress.SIZE - 1));
+		int left = Math.min(sourceX(0, 0), sourceX(TileAddress.SIZE - 1, TileAddress.SIZE - 1));
+		if((top & 3) != 0 || (left & 3) != 0){
+			return null;
+		}
+		int[] order = new int[16];
+		for(int y = 0; y < TileAddress.SIZE; y++){
+			for(int x = 0; x < TileAddress.SIZE; x++){
+				order[TileAddress.offset(y, x)] = TileAddress.offset(sourceY(y, x) - top, sourceX(y, x) - left);
+			}
+		}
+		return order;
+
+	}
+
+	/**
+	* a method that returns the map applying inner first and then this map
+	* @param inner the map from the new view's coordinates to this map's coordinates
+	* @return a new CoordinateMap from the new view's coordinates to this map's source
+	*/
+	public CoordinateMap compose(CoordinateMap inner){
+
+		return new CoordinateMap(
+			yy * inner.yy + yx * inner.xy, yy * inner.yx + yx * inner.xx, yy * inner.y0 + yx * inner.x0 + y0,
+			xy * inner.yy + xx * inner.xy, xy * inner.yx + xx * inner.xx, xy * inner.y0 + xx * inner.x0 + x0);
+
+	}
+
+	/**
+	* a method that returns the source row of (y,x)
+	* @param y the row location
+	* @param x the column location
+	* @return the row location within the source
+	*/
+	public int sourceY(int y, int x){
+
+		return yy * y + yx * x + y0;
+
+	}
+
+	/**
+	* a method that returns the source column of (y,x)
+	* @param y the row location
+	* @param x the column location
+	* @return the column location within the source
+	*/
+	public int sourceX(int y, int x){
+
+		return xy * y + xx * x + x0;
+
+	}
+
+	/**
+	* a getter that returns how much the source row changes per column
+	* @return yx the step, -1, 0 or 1
+	*/
+	public int rowStepY(){
+
+		return yx;
+
+	}
+
+	/**
+	* a getter that returns how much the source column changes per column
+	* @return xx the step, -1, 0 or 1
+	*/
+	public int rowStepX(){
+
+		return xx;
+
+	}
+
+}
@@ -1,497 +1,1241 @@
-import java.util.Scanner;
-import java.io.File;
-
-/**
-* A class representing a single Image object, where operations are performed
-* @author Aidan Grupac
-*/
-public class Image{
-
-	/**
-	* an array of Tile objects
-	*/
-	private Tile[] tileArray;
-	/**
-	* integers representing the height and width of the Image
-	*/
-	private int width, height;
-
-	/**
-	* boolean representing whether Image is grayscale or not
-	*/
-	private boolean grayscale;
-
-	/**
-	* a constructor that creates an Image with with defined dimensions and color scheme but undefined contents
-	* @param height the height of the Image
-	* @param width the width of the Image
-	* @param grayscale the color scheme of the Image
-	*/
-	public Image(int height, int width, boolean grayscale){
-
-		this.height = height;
-		this.width = width;
-		this.grayscale = grayscale;
-		this.tileArray = new Tile[(height / 4) * (width / 4)];
-		//fill tileArray with empty tiles
-		for(int i = 0; i < tileArray.length; i++){
-			tileArray[i] = new Tile();
-		}
-
-	}
-
-	/**
-	* a constructor that creates an Image by reading a file's contents
-	* @param filename the name of the source file
-	*/
-	public Image(String filename){
-
-		File imageFile = new File(filename);
-		try{
-			Scanner scanner = new Scanner(imageFile);
-
-			if(scanner.nextLine().contains("P2")){
-				grayscale = true;
-			}
-			else{grayscale = false;}
-
-			this.width = scanner.nextInt();
-			this.height = scanner.nextInt();
-			scanner.next();
-			tileArray = new Tile[(height / 4) * (width / 4)];
-
-			//if grayscale image, each number is a pixel
-			if(grayscale){
-				int[][] allPixels = new int[height][width];
-				while(scanner.hasNext()){
-					for(int r = 0; r < height; r++){
-						for(int c = 0; c < width; c++){
-							allPixels[r][c] = scanner.nextInt();
-						}
-					}
-				}
-
-				for(int i = 0; i < height; i++){
-					for(int j = 0; j < width; j++){
-						Pixel p = new Pixel(allPixels[i][j]);
-						setPixel(i, j, p);
-					}
-				}
-			}
-			//if color image, each line of three numbers is a pixel
-			else{
-				while(scanner.hasNext()){
-					for(int i = 0; i < height; i++){
-						for(int j = 0; j < width; j++){
-							int r = scanner.nextInt();
-							int g = scanner.nextInt();
-							int b = scanner.nextInt();
-							Pixel p = new Pixel(r,g,b);
-							setPixel(i,j,p);
-						}
-					}
-				}
-			}
-
-			scanner.close();
-
-		}
-		catch(Exception e){
-			System.out.println(e);//debug
-		}
-
-	}
-
-	/**
-	* a method that creates a deep copy of an Image
-	* @return copy a new Image object
-	*/
-	public Image clone(){
-
-		Image copy = new Image(this.height, this.width, this.grayscale);
-
-		copy.tileArray = this.tileArray.clone();
-
-		return copy;
-
-	}
-
-	/**
-	* a getter that returns the width of an Image
-	* @return width the width of an Image
-	*/
-	public int getWidth(){
-
-		return width;
-
-	}
-
-	/**
-	* a getter that returns the height of an Image
-	* @return width the height of an Image
-	*/
-	public int getHeight(){
-
-		return height;
-
-	}
-
-	/**
-	* a getter that returns a Pixel at (y,x) coordinates of an Image
-	* @param y the row location within the Image
-	* @param x the column location within the Image
-	* @return the Pixel at coordinates (y,x)
-	*/
-	public Pixel getPixel(int y, int x){
-
-		//holds indexes of tiles in image
-		int[][] coordPlane = new int[this.height / 4][this.width / 4];
-
-		int position, min, max, r, c, tileRow, tileCol;
-		position = min = max = r = c = tileRow = tileCol = 0;
-
-		//fill array with tile indexes
-		for(int row = 0; row < height/4; row++){
-			for(int column = 0; column < width/4; column++){
-				coordPlane[row][column] = position;
-				position++;
-			}
-		}
-		//calculate the coordinates relative to an individual tile
-		for(int row = 0; row < height; row++){
-			min = 4 * row;
-			max = 4 * (row + 1);
-			tileRow = y - min;
-			if(y >= min && y < max){
-				for(int column = 0; column < width; column++){
-					min = 4 * column;
-					max = 4 * (column + 1);
-					if(x >= min && x < max){
-						r = row;
-						c = column;
-						tileCol = x - min;
-						break;
-					}
-				}
-				break;
-			}
-		}
-
-		return tileArray[coordPlane[r][c]].getPixel(tileRow, tileCol);
-
-	}
-
-	/**
-	* a setter that replaces a Pixel at (y,x) coordinates of an Image with Pixel p
-	* @param y the row location within the Image
-	* @param x the column location within the Image
-	* @param p the Pixel to insert
-	*/
-	public void setPixel(int y, int x, Pixel p){
-
-		//holds indexes of tiles in image
-		int[][] coordPlane = new int[this.getHeight() / 4][this.getWidth() / 4];
-		int position, min, max, r, c, tileRow, tileCol;
-		position = min = max = r = c = tileRow = tileCol = 0;
-
-		//fill array with tile indexes
-		for(int row = 0; row < this.height/4; row++){
-			for(int column = 0; column < this.width/4; column++){
-				coordPlane[row][column] = position;
-				position++;
-			}
-		}
-		//calculate the coordinates relative to an individual tile
-		for(int row = 0; row < height; row++){
-			min = 4 * row;
-			max = 4 * (row + 1);
-			tileRow = y - min;
-			if(y >= min && y < max){
-				for(int column = 0; column < width; column++){
-					min = 4 * column;
-					max = 4 * (column + 1);
-					if(x >= min && x < max){
-						r = row;
-						c = column;
-						tileCol = x - min;
-						break;
-					}
-				}
-				break;
-			}
-		}
-
-		int location = coordPlane[r][c];
-
-		//if tile doesn't exist, create new one
-		if(tileArray[location] == null){
-			tileArray[location] = new Tile();
-		}
-
-		tileArray[location].setPixel(tileRow, tileCol, p);
-
-	}
-
-	/*
-	* a method that creates a new Image, using the contents of original, whose scale has been changed by a factor
-	* @param factor the scale by which the Image is changed
-	* @return output a new Image
-	*/
-	public Image scale(int factor){
-
-		Image output;
-
-		//negative factor
-		if(factor < 0){
-
-			factor *= -1;
-
-			output = new Image(height/factor, width/factor, this.grayscale);
-
-			//iterate through original image and add pixels at coordinates that are multiples of factor to new image
-			int y = 0;
-			int x;
-			for(int i = 0; i < height; i+=factor){
-				x = 0;
-				for(int j = 0; j < width; j+=factor){
-					Pixel p = this.getPixel(i,j).clone();
-					output.setPixel(y,x,p);
-					x++;
-				}
-				y++;
-			}
-
-		}
-
-		//positive factor
-		else{
-			output = new Image(height*factor, width*factor, this.grayscale);
-
-			int row, col, counter;
-			row = counter = 0;
-
-			//iterate through enlarged image and add pixel from original image while still within specific bounds
-			for(int i = 0; i < height*factor; i++){
-				col = 0;
-				for(int j = 0; j < width; j++){
-					for(int k = 0; k < factor; k++){
-						Pixel p = this.getPixel(row,j).clone();
-						output.setPixel(i,col,p);
-						col++;
-					}
-				}
-				counter++;
-				if(counter >= factor){
-					row++;
-					counter = 0;
-				}
-			}
-
-		}
-
-		return output;
-
-	}
-
-	/*
-	* a method that creates a new Image, using the contents of original, whose dimensions are determined by four bounds
-	* @param topY the starting row location within original Image
-	* @param topX the starting column location within original Image
-	* @param height the height of the new Image
-	* @param width the width of the new Image
-	* @return output a new Image
-	*/
-	public Image crop(int topY, int topX, int height, int width){
-
-		int cropHeight = height;
-		int cropWidth = width;
-
-		Image output = new Image(cropHeight, cropWidth, this.grayscale);
-
-		//add pixels within bounds from original image to new image
-		int x, y;
-		x = y = 0;
-		for(int i = topY; i < cropHeight+topY; i++){
-			x = 0;
-			for(int j = topX; j < cropWidth+topX; j++){
-				Pixel p = this.getPixel(i,j).clone();
-				output.setPixel(y,x,p);
-				x++;
-			}
-			y++;
-		}
-
-		return output;
-
-	}
-
-	/*
-	* a method that creates a new Image, using the contents of original, which has been mirrored across an axis
-	* @param direction the vertical or horizontal direction over which the Image will be flipped
-	* @return output a new Image
-	*/
-	public Image flip(String direction){
-
-		Image output = this.clone();
-
-		//vertical: invert columns
-		if(direction.contains("vertical")){
-			for(int i = 0; i < height/2; i++){
-				for(int j = 0; j < width; j++){
-					Pixel p = output.getPixel(i,j).clone();
-					Pixel q = output.getPixel(height-1-i,j).clone();
-					output.setPixel(i,j,q);
-					output.setPixel(height-1-i,j,p);
-				}
-			}
-		}
-		//horizontal: invert rows
-		else{
-			for(int i = 0; i < height; i++){
-				for(int j = 0; j < width/2; j++){
-					Pixel p = output.getPixel(i,j).clone();
-					Pixel q = output.getPixel(i,width-1-j).clone();
-					output.setPixel(i,j,q);
-					output.setPixel(i,width-1-j,p);
-				}
-			}
-		}
-
-		return output;
-
-	}
-
-	/*
-	* a method that creates a new Image, using the contents of original, which has been rotated
-	* @param rotate the clockwise or counterclockwise direction the Image will be rotated
-	* @return output a new Image
-	*/
-	public Image rotate(boolean clockwise){
-
-		int nHeight = this.width;
-		int nWidth = this.height;
-
-		Image output = new Image(nHeight, nWidth, this.grayscale);
-
-		//first transpose pixels from original image to new image
-		for(int i = 0; i < this.height; i++){
-			for(int j = 0; j < this.width; j++){
-				Pixel p = this.getPixel(i,j).clone();
-				output.setPixel(j,i,p);
-			}
-		}
-		//if clockwise, invert rows
-		if(clockwise){
-			for(int i = 0; i < nHeight; i++){
-				for(int j = 0; j < nWidth/2; j++){
-					Pixel p = output.getPixel(i,j).clone();
-					Pixel q = output.getPixel(i,nWidth-1-j).clone();
-					output.setPixel(i,j,q);
-					output.setPixel(i,nWidth-1-j,p);
-				}
-			}
-		}
-		//if counterclockwise, invert columns
-		else{
-			for(int i = 0; i < nHeight/2; i++){
-				for(int j = 0; j < nWidth; j++){
-					Pixel p = output.getPixel(i,j).clone();
-					Pixel q = output.getPixel(nHeight-1-i,j).clone();
-					output.setPixel(i,j,q);
-					output.setPixel(nHeight-1-i,j,p);
-				}
-			}
-		}
-
-		return output;
-
-	}
-
-	/*
-	* a method that creates a new CompressedImage, using the contents of original, which has certain equal Pixels and/or Tiles replaced with aliases
-	* @param tileCompression whether or not Tile compression will be applied
-	* @param pixelCompression whether or not Pixel compression will be applied
-	* @return output a new CompressedImage
-	*/
-	public CompressedImage compress(boolean tileCompression, boolean pixelCompression){
-
-		//returns new CompressedImage object built from current image, operations are done here
-
-		CompressedImage output = new CompressedImage(this.height, this.width, this.grayscale);
-
-		//build compressedimage object from original image
-		for(int i = 0; i < this.height; i++){
-			for(int j = 0; j < this.width; j++){
-				Pixel p = this.getPixel(i,j).clone();
-				output.setPixel(i,j,p);
-			}
-		}
-
-		//if pixel compression is on
-		if(pixelCompression){
-			//iterate through each tile of image
-			for(int n = 0; n < output.getTileArray().length; n++){
-				//get pixel from tile
-				for(int i = 0; i < 4; i++){
-					for(int j = 0; j < 4; j++){
-						//search through pixels in tile
-						for(int k = 0; k < 4; k++){
-							for(int l = 0; l < 4; l++){
-								//if equal, replace with alias
-								if(output.getTileArray()[n].getPixel(i,j).equals(output.getTileArray()[n].getPixel(k,l))){
-
-									output.getTileArray()[n].setPixel(i, j, (output.getTileArray()[n].getPixel(k,l)));
-								}
-							}
-						}
-					}
-				}
-			}
-		}
-		//if tile compression is on
-		if(tileCompression){
-			//go through each tile while counting index
-			for(int i = 0; i < output.getTileArray().length; i++){
-				//go through each tile again
-				for(int j = i+1; j < output.getTileArray().length; j++){
-					//if tile a equals tile b replace with alias
-					if(output.getTileArray()[i].equals(output.getTileArray()[j])){
-						output.getTileArray()[i] = output.getTileArray()[j];
-					}
-				}
-			}
-		}
-
-		return output;
-
-	}
-
-	/**
-	* A method that checks if the current Image is equal to another Object - shares contents but not memory location
-	* @param other the Object to be compared
-	* @return true/false depending on equality
-	*/
-	public boolean equals(Object other){
-
-		//check if other is instance of image
-		if(other instanceof Image){
-			Image compare = (Image) other;
-			//if tileArray lengths don't match
-			if(compare.tileArray.length != this.tileArray.length){
-				return false;
-			}
-			//if tileArray elements don't match
-			for(int i = 0; i < this.tileArray.length; i++){
-				if(!compare.tileArray[i].equals(this.tileArray[i])){
-					return false;
-				}
-				else{
-					return true;
-				}
-			}
-		}
-		return false;
-
-	}
-
-}
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.stream.IntStream;
+
+/**
+* A class representing a single Image object, where operations are performed
+* @author Aidan Grupac
+*/
+public class Image implements SampleSource{
+
+	/**
+	* an array of Tile objects
+	*/
+	private Tile[] tileArray;
+	/**
+	* integers representing the height and width of the Image
+	*/
+	private int width, height;
+
+	/**
+	* boolean representing whether Image is grayscale or not
+	*/
+	private boolean grayscale;
+
+	/**
+	* boolean representing whether the Tiles of the Image store packed integers rather than Pixel objects
+	*/
+	private boolean packed;
+
+	/**
+	* the largest value a sample of the Image may hold
+	*/
+	private int maxval;
+
+	/**
+	* the Image this Image is a view of, or null when this Image holds its own Tiles
+	* a view has no tileArray until it is written to, every read goes through map to source instead
+	*/
+	private Image source;
+	/**
+	* the mapping from coordinates of a view to coordinates of its source, null when this Image is not a view
+	*/
+	private CoordinateMap map;
+	/**
+	* whether tileArray itself may be shared with a clone, in which case it and every Tile in it are copied before the first write
+	*/
+	private volatile boolean sharedArray;
+	/**
+	* for each Tile, whether this Image is its only owner and may write to it; null when every Tile is owned
+	* a Tile that isn't owned is shared with another Image and is copied before it is written to
+	*/
+	private boolean[] owned;
+	/**
+	* the memory-mapped file holding the Tiles of this Image, or null when they are on the heap in tileArray
+	*/
+	private MappedTileStore store;
+
+	/**
+	* a constructor that creates an Image with with defined dimensions and color scheme but undefined contents, stored as packed Tiles
+	* @param height the height of the Image
+	* @param width the width of the Image
+	* @param grayscale the color scheme of the Image
+	*/
+	public Image(int height, int width, boolean grayscale){
+
+		this(height, width, grayscale, true);
+
+	}
+
+	/**
+	* a constructor that creates an Image with with defined dimensions, color scheme and storage but undefined contents
+	* @param height the height of the Image
+	* @param width the width of the Image
+	* @param grayscale the color scheme of the Image
+	* @param packed whether the Tiles store packed integers (see Tile) or Pixel objects
+	*/
+	public Image(int height, int width, boolean grayscale, boolean packed){
+
+		this.height = height;
+		this.width = width;
+		this.grayscale = grayscale;
+		this.packed = packed;
+		this.maxval = 255;
+		this.tileArray = new Tile[TileAddress.tileCount(height, width)];
+		//fill tileArray with empty tiles
+		for(int i = 0; i < tileArray.length; i++){
+			tileArray[i] = new Tile(grayscale, packed);
+		}
+
+	}
+
+	/**
+	* a constructor that creates an Image with no Tiles, used for views
+	*/
+	private Image(){
+
+	}
+
+	/**
+	* a constructor that creates an Image by reading a file's contents
+	* @param filename the name of the source file
+	*/
+	public Image(String filename){
+
+		try{
+			read(filename);
+		}
+		catch(Exception e){
+			System.out.println(e);//debug
+		}
+
+	}
+
+	/**
+	* a method that creates an Image by reading a file's contents, reporting any problem to the caller rather than printing it
+	* @param filename the name of the source file
+	* @return a new Image
+	* @throws IOException if the file can't be read or isn't a valid PGM/PPM
+	*/
+	public static Image load(String filename) throws IOException{
+
+		Image img = new Image();
+		img.read(filename);
+		return img;
+
+	}
+
+	/**
+	* a method that creates an Image from a reader whose header has been read, such as one reading an upload, and closes the reader
+	* @param reader the reader, positioned at the first row
+	* @return a new Image
+	* @throws IOException if a row can't be read
+	*/
+	public static Image load(PnmReader reader) throws IOException{
+
+		Image img = new Image();
+		img.read(reader);
+		return img;
+
+	}
+
+	/**
+	* a method that fills an Image with a file's contents, shared by Image(String) and load()
+	* @param filename the name of the source file
+	* @throws IOException if the file can't be read or isn't a valid PGM/PPM
+	*/
+	private void read(String filename) throws IOException{
+
+		read(new PnmReader(filename));
+
+	}
+
+	/**
+	* a method that fills an Image with the rows of a reader and closes it
+	* @param reader the reader, positioned at the first row
+	* @throws IOException if a row can't be read
+	*/
+	private void read(PnmReader reader) throws IOException{
+
+		long start = Metrics.start();
+		try{
+			this.grayscale = reader.isGrayscale();
+			this.maxval = reader.getMaxval();
+			//a packed color tile holds 8 bits per sample, so 16-bit color keeps Pixel objects
+			this.packed = grayscale || maxval <= 255;
+			this.width = reader.getWidth();
+			this.height = reader.getHeight();
+			tileArray = new Tile[TileAddress.tileCount(height, width)];
+
+			//decode one row at a time straight into the tiles
+			int[] row = new int[width * getChannels()];
+			for(int i = 0; i < height; i++){
+				reader.readRow(row);
+				setSamples(i, 0, width, row);
+			}
+			Metrics.add("read.bytes", reader.getBytesRead());
+			Metrics.add("read.pixels", (long) height * width);
+		}
+		finally{
+			reader.close();
+		}
+		Metrics.stop("read", start);
+
+	}
+
+	/**
+	* a method that creates an Image whose Tiles stay in a memory-mapped file rather than on the heap, see MappedTileStore
+	* reads and writes go straight to the file; views of the Image read through to it as well, while other operations build ordinary Images
+	* @param store the mapped file
+	* @return a new Image
+	*/
+	public static Image mapped(MappedTileStore store){
+
+		Image img = new Image();
+		img.store = store;
+		img.height = store.getHeight();
+		img.width = store.getWidth();
+		img.grayscale = store.isGrayscale();
+		img.maxval = store.getMaxval();
+		img.packed = img.grayscale || img.maxval <= 255;
+		return img;
+
+	}
+
+	/**
+	* a getter that returns whether the Tiles of an Image are in a memory-mapped file
+	* @return true if the Image was made by mapped()
+	*/
+	public boolean isMapped(){
+
+		return store != null;
+
+	}
+
+	/**
+	* a method that creates an Image with the same color scheme, storage and maximum sample value as this one but undefined contents
+	* @param height the height of the new Image
+	* @param width the width of the new Image
+	* @return a new Image
+	*/
+	private Image blank(int height, int width){
+
+		Image output = new Image(height, width, this.grayscale, this.packed);
+		output.maxval = this.maxval;
+		Metrics.add("alloc.estimatedBytes", estimateFootprint(height, width, grayscale, packed));
+		return output;
+
+	}
+
+	/**
+	* a method that creates an Image with the same color scheme, storage and maximum sample value as this one and an empty tileArray
+	* @param height the height of the new Image
+	* @param width the width of the new Image
+	* @return a new Image
+	*/
+	private Image shell(int height, int width){
+
+		Image output = new Image();
+		output.height = height;
+		output.width = width;
+		output.grayscale = this.grayscale;
+		output.packed = this.packed;
+		output.maxval = this.maxval;
+		output.tileArray = new Tile[TileAddress.tileCount(height, width)];
+		return output;
+
+	}
+
+	/**
+	* a method that returns the Tile at a position of tileArray ready to be written, copying it first if it is shared with another Image
+	* the first write after clone() also copies tileArray, which only one thread may do
+	* @param location the index within tileArray
+	* @return a Tile only this Image refers to
+	*/
+	private Tile writableTile(int location){
+
+		if(sharedArray){
+			unshareArray();
+		}
+		Tile tile = tileArray[location];
+		if(tile == null){
+			tile = new Tile(grayscale, packed);
+			tileArray[location] = tile;
+			if(owned != null){
+				owned[location] = true;
+			}
+		}
+		else if(owned != null && !owned[location]){
+			tile = tile.clone();
+			tileArray[location] = tile;
+			owned[location] = true;
+		}
+		return tile;
+
+	}
+
+	/**
+	* a method that gives this Image a tileArray of its own after clone(), with every Tile still shared until it is written to
+	*/
+	private synchronized void unshareArray(){
+
+		if(sharedArray){
+			Tile[] copy = tileArray.clone();
+			owned = new boolean[copy.length];
+			tileArray = copy;
+			//publish the new array before other threads stop coming through here
+			sharedArray = false;
+		}
+
+	}
+
+	/**
+	* a method that gives up ownership of every Tile, so they can be shared with another Image and are copied before this one writes to them
+	*/
+	private synchronized void shareTiles(){
+
+		if(!sharedArray){
+			owned = new boolean[tileArray.length];
+		}
+
+	}
+
+	/**
+	* a method that creates a view of this Image: an Image with no Tiles of its own whose Pixels are read through a CoordinateMap
+	* a view of a view maps straight to the original source, so chains of views cost nothing until they are read
+	* the view reads through a copy-on-write clone of this Image, so later changes to this Image don't show through; a mapped Image is read directly
+	* @param map the mapping from coordinates of the view to coordinates of this Image
+	* @param height the height of the view
+	* @param width the width of the view
+	* @return a new Image
+	*/
+	private Image view(CoordinateMap map, int height, int width){
+
+		Image output = new Image();
+		output.height = height;
+		output.width = width;
+		output.grayscale = this.grayscale;
+		output.packed = this.packed;
+		output.maxval = this.maxval;
+		if(this.source != null){
+			output.source = this.source;
+			output.map = this.map.compose(map);
+		}
+		else{
+			output.source = this.store != null ? this : this.clone();
+			output.map = map;
+		}
+		return output;
+
+	}
+
+	/**
+	* a getter that returns whether an Image is a view that has not yet copied its Pixels into Tiles of its own
+	* @return true if the Image is a view
+	*/
+	public boolean isView(){
+
+		return source != null;
+
+	}
+
+	/**
+	* a method that turns a view into an ordinary Image by copying its Pixels into Tiles of its own, called before a view is written to
+	* when Tiles of the view line up with Tiles of the source, as for tile-aligned crops and for rotations and mirrors of Images whose sides are multiples of 4,
+	* each whole Tile inside the view is copied at once with its 16 Pixels rearranged; only Tiles on a ragged edge, or every Tile otherwise, are gathered Pixel by Pixel
+	*/
+	public void materialize(){
+
+		if(source == null){
+			return;
+		}
+		long start = Metrics.start();
+		Image copy = shell(height, width);
+
+		int[] order = source.tileArray != null ? map.tileOrder() : null;
+		//Tiles that only move, as in an aligned crop, are shared rather than copied
+		boolean moveOnly = order != null && isIdentity(order);
+		if(moveOnly){
+			source.shareTiles();
+			copy.owned = new boolean[copy.tileArray.length];
+		}
+		//rows and columns covered by whole Tiles; for a map that lines up, the source Tiles of whole Tiles lie entirely inside the source
+		int fullHeight = order == null ? 0 : height - height % TileAddress.SIZE;
+		int fullWidth = order == null ? 0 : width - width % TileAddress.SIZE;
+
+		ParallelEngine.forEachBand(height, (from, to) -> {
+			int[] row = new int[width * getChannels()];
+			for(int y = from; y < to; y++){
+				if(y < fullHeight && fullWidth > 0){
+					if((y & 3) == 0){
+						for(int x = 0; x < fullWidth; x += TileAddress.SIZE){
+							//the source Tile is the one holding the lowest source row and column this Tile maps to
+							int sy = Math.min(map.sourceY(y, x), map.sourceY(y + 3, x + 3));
+							int sx = Math.min(map.sourceX(y, x), map.sourceX(y + 3, x + 3));
+							Tile tile = source.tileArray[TileAddress.tileIndex(sy, sx, source.width)];
+							copy.tileArray[TileAddress.tileIndex(y, x, width)] = tile == null || moveOnly ? tile : tile.permute(order);
+						}
+					}
+					//the ragged right edge
+					if(fullWidth < width){
+						this.getSamples(y, fullWidth, width - fullWidth, row);
+						copy.setSamples(y, fullWidth, width - fullWidth, row);
+					}
+				}
+				else{
+					this.getSamples(y, 0, width, row);
+					copy.setSamples(y, 0, width, row);
+				}
+			}
+		});
+
+		this.tileArray = copy.tileArray;
+		this.owned = copy.owned;
+		this.source = null;
+		this.map = null;
+		Metrics.add("materialize.pixels", (long) height * width);
+		Metrics.stop("materialize", start);
+
+	}
+
+	/**
+	* a method that checks whether a Tile permutation leaves every Pixel where it is
+	* @param order the permutation, see CoordinateMap.tileOrder()
+	* @return true if order[i] == i for every i
+	*/
+	private static boolean isIdentity(int[] order){
+
+		for(int i = 0; i < order.length; i++){
+			if(order[i] != i){
+				return false;
+			}
+		}
+		return true;
+
+	}
+
+	/**
+	* a method that checks a run of Pixels lies within a view
+	* @param y the row location
+	* @param x the starting column location
+	* @param length the number of Pixels
+	*/
+	private void checkView(int y, int x, int length){
+
+		if(y < 0 || x < 0 || y >= height || x + length > width){
+			throw new IndexOutOfBoundsException("(" + y + "," + x + ")+" + length + " outside " + height + "x" + width + " image");
+		}
+
+	}
+
+	/**
+	* a method that copies the samples of a run of Pixels of a view from its source, following the map
+	* a run maps to part of a source row, forwards or backwards, or to part of a source column
+	* @param y the row location within the view
+	* @param x the starting column location within the view
+	* @param length the number of Pixels to copy
+	* @param samples the array receiving the samples
+	*/
+	private void viewSamples(int y, int x, int length, int[] samples){
+
+		int sy = map.sourceY(y, x);
+		int sx = map.sourceX(y, x);
+		int stepY = map.rowStepY();
+		int stepX = map.rowStepX();
+		int channels = getChannels();
+
+		if(stepY == 0 && stepX == 1){
+			source.getSamples(sy, sx, length, samples);
+		}
+		else if(stepY == 0 && stepX == -1){
+			//read the source run left to right, then reverse the order of its pixels
+			source.getSamples(sy, sx - length + 1, length, samples);
+			for(int i = 0, j = length - 1; i < j; i++, j--){
+				for(int k = 0; k < channels; k++){
+					int swap = samples[i*channels + k];
+					samples[i*channels + k] = samples[j*channels + k];
+					samples[j*channels + k] = swap;
+				}
+			}
+		}
+		else{
+			for(int i = 0; i < length; i++){
+				source.sampleAt(sy + i*stepY, sx + i*stepX, samples, i*channels);
+			}
+		}
+
+	}
+
+	/**
+	* a method that copies the samples of one Pixel of an Image that is not a view
+	* @param y the row location within the Image
+	* @param x the column location within the Image
+	* @param dest the array receiving the samples
+	* @param destPos the starting index within dest
+	*/
+	private void sampleAt(int y, int x, int[] dest, int destPos){
+
+		TileAddress.check(y, x, height, width);
+		if(store != null){
+			store.getSamples(y, x, 1, dest, destPos);
+			return;
+		}
+		tileArray[TileAddress.tileIndex(y, x, width)].getSamples(y & 3, x & 3, 1, dest, destPos);
+
+	}
+
+	/**
+	* a method that creates a copy of an Image in constant time: the copy shares every Tile until either Image writes to it, see writableTile()
+	* changes to the copy never show in the original, or the other way around
+	* @return copy a new Image object
+	*/
+	public Image clone(){
+
+		//a copy of a view is another view of the same source, and a mapped Image is only ever copied as a view
+		if(source != null || store != null){
+			return view(new CoordinateMap(1, 0, 0, 0, 1, 0), height, width);
+		}
+
+		//both Images share tileArray and its Tiles until either writes, see writableTile()
+		Image copy = new Image();
+		copy.height = this.height;
+		copy.width = this.width;
+		copy.grayscale = this.grayscale;
+		copy.packed = this.packed;
+		copy.maxval = this.maxval;
+		synchronized(this){
+			copy.tileArray = this.tileArray;
+			copy.sharedArray = true;
+			this.sharedArray = true;
+		}
+
+		return copy;
+
+	}
+
+	/**
+	* a getter that returns the width of an Image
+	* @return width the width of an Image
+	*/
+	public int getWidth(){
+
+		return width;
+
+	}
+
+	/**
+	* a getter that returns the height of an Image
+	* @return width the height of an Image
+	*/
+	public int getHeight(){
+
+		return height;
+
+	}
+
+	/**
+	* a getter that returns whether an Image is grayscale
+	* @return grayscale the color scheme of an Image
+	*/
+	public boolean isGrayscale(){
+
+		return grayscale;
+
+	}
+
+	/**
+	* a getter that returns whether the Tiles of an Image store packed integers rather than Pixel objects
+	* @return packed the storage of an Image
+	*/
+	public boolean isPacked(){
+
+		return packed;
+
+	}
+
+	/**
+	* a getter that returns the largest value a sample of an Image may hold
+	* @return maxval the maximum sample value
+	*/
+	public int getMaxval(){
+
+		return maxval;
+
+	}
+
+	/**
+	* a setter used by CompressedFile.readImage() to record a maximum sample value other than 255
+	* @param maxval the maximum sample value
+	*/
+	void setMaxval(int maxval){
+
+		this.maxval = maxval;
+
+	}
+
+	/**
+	* a getter that returns the number of samples stored for each Pixel, 1 for grayscale and 3 for color
+	* @return the number of samples per Pixel
+	*/
+	public int getChannels(){
+
+		return grayscale ? 1 : 3;
+
+	}
+
+	/**
+	* a getter that returns a Pixel at (y,x) coordinates of an Image
+	* @param y the row location within the Image
+	* @param x the column location within the Image
+	* @return the Pixel at coordinates (y,x)
+	*/
+	public Pixel getPixel(int y, int x){
+
+		if(source != null){
+			checkView(y, x, 1);
+			return source.getPixel(map.sourceY(y, x), map.sourceX(y, x));
+		}
+		TileAddress.check(y, x, height, width);
+		if(store != null){
+			int[] value = new int[getChannels()];
+			store.getSamples(y, x, 1, value, 0);
+			return grayscale ? new Pixel(value[0]) : new Pixel(value[0], value[1], value[2]);
+		}
+		return tileArray[TileAddress.tileIndex(y, x, width)].getPixel(y & 3, x & 3);
+
+	}
+
+	/**
+	* a setter that replaces a Pixel at (y,x) coordinates of an Image with Pixel p
+	* @param y the row location within the Image
+	* @param x the column location within the Image
+	* @param p the Pixel to insert
+	*/
+	public void setPixel(int y, int x, Pixel p){
+
+		materialize();
+		TileAddress.check(y, x, height, width);
+		if(store != null){
+			store.setSamples(y, x, 1, p.getValue(), 0);
+			return;
+		}
+		//creates the tile if it doesn't exist, copies it if it is shared
+		writableTile(TileAddress.tileIndex(y, x, width)).setPixel(y & 3, x & 3, p);
+
+	}
+
+	/**
+	* a method that copies a run of Pixels from row y of an Image into an array, one Tile at a time
+	* @param y the row location within the Image
+	* @param x the starting column location within the Image
+	* @param length the number of Pixels to copy
+	* @param row the array receiving the Pixels, or null to allocate one
+	* @return row the array holding the Pixels
+	*/
+	public Pixel[] getRow(int y, int x, int length, Pixel[] row){
+
+		if(row == null){
+			row = new Pixel[length];
+		}
+		if(length == 0){
+			return row;
+		}
+		if(source != null || store != null){
+			checkView(y, x, length);
+			for(int i = 0; i < length; i++){
+				row[i] = getPixel(y, x + i);
+			}
+			return row;
+		}
+		TileAddress.check(y, x, height, width);
+		TileAddress.check(y, x + length - 1, height, width);
+
+		//walk across the tiles covering the run, copying up to 4 pixels from each
+		int base = TileAddress.tileIndex(y, 0, width);
+		int copied = 0;
+		while(copied < length){
+			int column = x + copied;
+			int count = Math.min(TileAddress.SIZE - (column & 3), length - copied);
+			tileArray[base + (column >> 2)].getRow(y & 3, column & 3, count, row, copied);
+			copied += count;
+		}
+
+		return row;
+
+	}
+
+	/**
+	* a method that replaces a run of Pixels in row y of an Image with Pixels from an array, one Tile at a time
+	* @param y the row location within the Image
+	* @param x the starting column location within the Image
+	* @param length the number of Pixels to copy
+	* @param row the array holding the Pixels
+	*/
+	public void setRow(int y, int x, int length, Pixel[] row){
+
+		if(length == 0){
+			return;
+		}
+		materialize();
+		TileAddress.check(y, x, height, width);
+		TileAddress.check(y, x + length - 1, height, width);
+		if(store != null){
+			for(int i = 0; i < length; i++){
+				store.setSamples(y, x + i, 1, row[i].getValue(), 0);
+			}
+			return;
+		}
+
+		int base = TileAddress.tileIndex(y, 0, width);
+		int copied = 0;
+		while(copied < length){
+			int column = x + copied;
+			int count = Math.min(TileAddress.SIZE - (column & 3), length - copied);
+			writableTile(base + (column >> 2)).setRow(y & 3, column & 3, count, row, copied);
+			copied += count;
+		}
+
+	}
+
+	/**
+	* a method that copies the samples of a run of Pixels from row y of an Image into an array without creating Pixel objects
+	* grayscale Pixels take one sample each and color Pixels take three, in red, green, blue order
+	* @param y the row location within the Image
+	* @param x the starting column location within the Image
+	* @param length the number of Pixels to copy
+	* @param samples the array receiving the samples, or null to allocate one
+	* @return samples the array holding the samples
+	*/
+	public int[] getSamples(int y, int x, int length, int[] samples){
+
+		int channels = getChannels();
+		if(samples == null){
+			samples = new int[length * channels];
+		}
+		if(length == 0){
+			return samples;
+		}
+		if(source != null){
+			checkView(y, x, length);
+			viewSamples(y, x, length, samples);
+			return samples;
+		}
+		TileAddress.check(y, x, height, width);
+		TileAddress.check(y, x + length - 1, height, width);
+		if(store != null){
+			store.getSamples(y, x, length, samples, 0);
+			return samples;
+		}
+
+		int base = TileAddress.tileIndex(y, 0, width);
+		int copied = 0;
+		while(copied < length){
+			int column = x + copied;
+			int count = Math.min(TileAddress.SIZE - (column & 3), length - copied);
+			tileArray[base + (column >> 2)].getSamples(y & 3, column & 3, count, samples, copied * channels);
+			copied += count;
+		}
+
+		return samples;
+
+	}
+
+	/**
+	* a method that replaces a run of Pixels in row y of an Image with samples from an array
+	* @param y the row location within the Image
+	* @param x the starting column location within the Image
+	* @param length the number of Pixels to replace
+	* @param samples the array holding the samples, see getSamples()
+	*/
+	public void setSamples(int y, int x, int length, int[] samples){
+
+		if(length == 0){
+			return;
+		}
+		materialize();
+		TileAddress.check(y, x, height, width);
+		TileAddress.check(y, x + length - 1, height, width);
+		if(store != null){
+			store.setSamples(y, x, length, samples, 0);
+			return;
+		}
+
+		int channels = getChannels();
+		int base = TileAddress.tileIndex(y, 0, width);
+		int copied = 0;
+		while(copied < length){
+			int column = x + copied;
+			int count = Math.min(TileAddress.SIZE - (column & 3), length - copied);
+			writableTile(base + (column >> 2)).setSamples(y & 3, column & 3, count, samples, copied * channels);
+			copied += count;
+		}
+
+	}
+
+	/**
+	* a method that estimates how many bytes of heap an Image occupies, counting each distinct Tile once
+	* @return the estimated size in bytes
+	*/
+	public long footprint(){
+
+		//a view holds only its map, and a mapped Image keeps its Tiles off the heap
+		if(source != null || store != null){
+			return 48 + 40;
+		}
+		//image object plus tileArray references
+		long bytes = 32 + 16 + 4L * tileArray.length;
+		IdentityHashMap<Tile, Boolean> seen = new IdentityHashMap<Tile, Boolean>();
+		for(Tile tile : tileArray){
+			if(tile != null && seen.put(tile, Boolean.TRUE) == null){
+				bytes += tile.footprint();
+			}
+		}
+		return bytes;
+
+	}
+
+	/**
+	* a method that estimates how many bytes of heap a fully populated Image would occupy without building one
+	* @param height the height of the Image
+	* @param width the width of the Image
+	* @param grayscale the color scheme of the Image
+	* @param packed whether the Tiles store packed integers or Pixel objects
+	* @return the estimated size in bytes
+	*/
+	public static long estimateFootprint(int height, int width, boolean grayscale, boolean packed){
+
+		long tiles = TileAddress.tileCount(height, width);
+		long perTile = 24 + 80;
+		if(!packed){
+			perTile += 16 * Pixel.footprint(grayscale);
+		}
+		return 32 + 16 + 4 * tiles + perTile * tiles;
+
+	}
+
+	/*
+	* a method that creates a new Image, using the contents of original, whose scale has been changed by a factor
+	* rows of the new Image are filled in bands on several threads, see ParallelEngine
+	* @param factor the scale by which the Image is changed
+	* @return output a new Image
+	*/
+	public Image scale(int factor){
+
+		long start = Metrics.start();
+		Image output;
+		int channels = getChannels();
+
+		//negative factor
+		if(factor < 0){
+
+			int shrink = -factor;
+
+			output = blank(height/shrink, width/shrink);
+			Image target = output;
+
+			//take every factor-th row of original image and every factor-th pixel of that row
+			ParallelEngine.forEachBand(output.height, (from, to) -> {
+				int[] source = new int[width * channels];
+				int[] scaled = new int[target.width * channels];
+				for(int y = from; y < to; y++){
+					this.getSamples(y*shrink, 0, width, source);
+					for(int x = 0; x < target.width; x++){
+						for(int k = 0; k < channels; k++){
+							scaled[x*channels + k] = source[x*shrink*channels + k];
+						}
+					}
+					target.setSamples(y, 0, target.width, scaled);
+				}
+			});
+
+		}
+
+		//positive factor
+		else{
+			output = blank(height*factor, width*factor);
+			Image target = output;
+
+			//repeat each pixel of a row factor times, then repeat that row factor times
+			ParallelEngine.forEachBand(output.height, (from, to) -> {
+				int[] source = new int[width * channels];
+				int[] scaled = new int[target.width * channels];
+				for(int i = from; i < to; i++){
+					//the scaled row only changes every factor rows
+					if(i == from || i % factor == 0){
+						this.getSamples(i/factor, 0, width, source);
+						int col = 0;
+						for(int j = 0; j < width; j++){
+							for(int k = 0; k < factor; k++){
+								System.arraycopy(source, j*channels, scaled, col*channels, channels);
+								col++;
+							}
+						}
+					}
+					target.setSamples(i, 0, target.width, scaled);
+				}
+			});
+
+		}
+
+		Metrics.add("scale.pixels", (long) output.height * output.width);
+		Metrics.stop("scale", start);
+		return output;
+
+	}
+
+	/*
+	* a method that creates a new Image, using the contents of original, resized to any dimensions by filtering, see Resampler
+	* @param height the height of the new Image
+	* @param width the width of the new Image
+	* @param kernel the filter: BOX averages, BILINEAR and BICUBIC interpolate
+	* @return output a new Image
+	*/
+	public Image resize(int height, int width, Resampler.Kernel kernel){
+
+		if(height < 1 || width < 1){
+			throw new IllegalArgumentException("Can't resize to " + height + "x" + width + ".");
+		}
+		long start = Metrics.start();
+		Image output = blank(height, width);
+		Resampler.resample(this, output, kernel);
+		Metrics.add("resize.pixels", (long) height * width);
+		Metrics.stop("resize", start);
+		return output;
+
+	}
+
+	/*
+	* a method that creates a view of original, whose dimensions are determined by four bounds
+	* no Pixels are copied until the new Image is written to, see view()
+	* @param topY the starting row location within original Image
+	* @param topX the starting column location within original Image
+	* @param height the height of the new Image
+	* @param width the width of the new Image
+	* @return output a new Image
+	*/
+	public Image crop(int topY, int topX, int height, int width){
+
+		if(topY < 0 || topX < 0 || height < 0 || width < 0 || topY + height > this.height || topX + width > this.width){
+			throw new IndexOutOfBoundsException("Crop outside " + this.height + "x" + this.width + " image.");
+		}
+
+		return view(CoordinateMap.crop(topY, topX), height, width);
+
+	}
+
+	/*
+	* a method that creates a view of original, which has been mirrored across an axis
+	* no Pixels are copied until the new Image is written to, see view()
+	* @param direction the vertical or horizontal direction over which the Image will be flipped
+	* @return output a new Image
+	*/
+	public Image flip(String direction){
+
+		//vertical: invert columns, horizontal: invert rows
+		return view(CoordinateMap.flip(direction.contains("vertical"), height, width), height, width);
+
+	}
+
+	/*
+	* a method that creates a view of original, which has been rotated
+	* no Pixels are copied until the new Image is written to, see view()
+	* @param rotate the clockwise or counterclockwise direction the Image will be rotated
+	* @return output a new Image
+	*/
+	public Image rotate(boolean clockwise){
+
+		return view(CoordinateMap.rotate(clockwise, height, width), width, height);
+
+	}
+
+	/*
+	* a method that creates a view of original, which has been rotated by a multiple of a quarter turn
+	* no Pixels are copied until the new Image is written to, see view(); copying then moves whole Tiles, see materialize()
+	* @param degrees the clockwise angle, 90, 180 or 270, or a negative angle counterclockwise
+	* @return output a new Image
+	*/
+	public Image rotate(int degrees){
+
+		switch(((degrees % 360) + 360) % 360){
+			case 0:
+			return view(new CoordinateMap(1, 0, 0, 0, 1, 0), height, width);
+
+			case 90:
+			return rotate(true);
+
+			case 180:
+			return view(CoordinateMap.rotateHalf(height, width), height, width);
+
+			case 270:
+			return rotate(false);
+
+			default:
+			throw new IllegalArgumentException("Can only rotate by a multiple of 90 degrees.");
+		}
+
+	}
+
+	/*
+	* a method that creates a view of original mirrored across the diagonal from its top left corner, so its rows become columns
+	* @return output a new Image
+	*/
+	public Image transpose(){
+
+		return view(CoordinateMap.transpose(), width, height);
+
+	}
+
+	/*
+	* a method that creates a view of original mirrored across the diagonal from its top right corner
+	* @return output a new Image
+	*/
+	public Image transverse(){
+
+		return view(CoordinateMap.transverse(height, width), width, height);
+
+	}
+
+	/*
+	* a method that creates a view of original through any CoordinateMap, such as one Pipeline built by fusing several crops, flips and rotations
+	* no Pixels are copied until the new Image is written to, see view()
+	* @param map the map from coordinates of the new Image to coordinates of original
+	* @param height the height of the new Image
+	* @param width the width of the new Image
+	* @return output a new Image
+	*/
+	public Image transform(CoordinateMap map, int height, int width){
+
+		//the map is affine, so if the corners land inside original every Pixel does
+		if(height > 0 && width > 0){
+			for(int y : new int[]{0, height - 1}){
+				for(int x : new int[]{0, width - 1}){
+					int sy = map.sourceY(y, x);
+					int sx = map.sourceX(y, x);
+					if(sy < 0 || sx < 0 || sy >= this.height || sx >= this.width){
+						throw new IndexOutOfBoundsException("Transform maps (" + y + "," + x + ") outside " + this.height + "x" + this.width + " image.");
+					}
+				}
+			}
+		}
+
+		return view(map, height, width);
+
+	}
+
+	/*
+	* a method that creates a new CompressedImage, using the contents of original, which has certain equal Pixels and/or Tiles replaced with aliases
+	* with Tile compression, bands of Tile rows are hashed on several threads into a StripedTileDictionary, and a Tile of Pixels is then built
+	* only once per distinct content; each Tile is replaced by the first Tile in tileArray order with the same Pixels, whatever the thread timing
+	* @param tileCompression whether or not Tile compression will be applied
+	* @param pixelCompression whether or not Pixel compression will be applied
+	* @return output a new CompressedImage
+	*/
+	public CompressedImage compress(boolean tileCompression, boolean pixelCompression){
+
+		//returns new CompressedImage object built from current image, operations are done here
+		long start = Metrics.start();
+
+		//with pixel compression every pixel value comes from the palette, so equal pixels share one object image-wide
+		PixelPalette palette = pixelCompression ? new PixelPalette() : null;
+		int channels = getChannels();
+		int across = TileAddress.tilesAcross(this.width);
+		Tile[] tiles = new Tile[TileAddress.tileCount(this.height, this.width)];
+		StripedTileDictionary dictionary = tileCompression ? new StripedTileDictionary(tiles.length) : null;
+		StripedTileDictionary.Entry[] entryOf = tileCompression ? new StripedTileDictionary.Entry[tiles.length] : null;
+
+		//read a band of Tile rows four rows at a time, then either intern each Tile's samples or build its Tile straight away
+		ParallelEngine.BandTask gather = (from, to) -> {
+			int[][] rows = new int[TileAddress.SIZE][this.width * channels];
+			int[] samples = new int[16 * channels];
+			for(int y = from; y < to; y += TileAddress.SIZE){
+				int tileHeight = Math.min(TileAddress.SIZE, this.height - y);
+				for(int r = 0; r < tileHeight; r++){
+					this.getSamples(y + r, 0, this.width, rows[r]);
+				}
+				for(int t = 0; t < across; t++){
+					int tileWidth = Math.min(TileAddress.SIZE, this.width - t * TileAddress.SIZE);
+					//Pixels past the edge read as black, as they do in a Tile
+					Arrays.fill(samples, 0);
+					for(int r = 0; r < tileHeight; r++){
+						System.arraycopy(rows[r], t * TileAddress.SIZE * channels, samples, r * TileAddress.SIZE * channels, tileWidth * channels);
+					}
+					int index = (y / TileAddress.SIZE) * across + t;
+					if(dictionary != null){
+						entryOf[index] = dictionary.intern(samples, index);
+					}
+					else{
+						tiles[index] = buildTile(samples, tileHeight, tileWidth, palette);
+					}
+				}
+			}
+		};
+		//the palette is shared by every Tile, so only building without one is split into bands
+		if(dictionary == null && palette != null){
+			gather.run(0, this.height);
+		}
+		else{
+			ParallelEngine.forEachBand(this.height, gather);
+		}
+
+		//if tile compression is on, build one whole Tile per distinct content, then point each Tile at it
+		Tile[] unique = tiles;
+		if(dictionary != null){
+			StripedTileDictionary.Entry[] entries = dictionary.toArray();
+			unique = new Tile[entries.length];
+			if(palette != null){
+				for(StripedTileDictionary.Entry entry : entries){
+					entry.setTile(buildTile(entry.getSamples(), TileAddress.SIZE, TileAddress.SIZE, palette));
+				}
+			}
+			else{
+				ParallelEngine.forEachBand(entries.length, (from, to) -> {
+					for(int e = from; e < to; e++){
+						entries[e].setTile(buildTile(entries[e].getSamples(), TileAddress.SIZE, TileAddress.SIZE, null));
+					}
+				});
+			}
+			for(int e = 0; e < entries.length; e++){
+				unique[e] = entries[e].getTile();
+			}
+			ParallelEngine.forEachBand(tiles.length, (from, to) -> {
+				for(int i = from; i < to; i++){
+					tiles[i] = entryOf[i].getTile();
+				}
+			});
+		}
+		CompressedImage output = new CompressedImage(this.height, this.width, this.grayscale, this.maxval, tiles);
+
+		//count what is left and what it costs compared to one object per pixel
+		long uniquePixels = 0;
+		long bytesAfter = 48 + 4L * tiles.length;
+		if(palette != null){
+			uniquePixels = palette.size();
+			bytesAfter += (24 + 80) * (long) unique.length + Pixel.footprint(grayscale) * uniquePixels;
+		}
+		else{
+			for(Tile tile : unique){
+				uniquePixels += tile.distinctPixels();
+				bytesAfter += tile.footprint();
+			}
+		}
+		long bytesBefore = estimateFootprint(this.height, this.width, this.grayscale, false);
+		output.setStats(new CompressionStats(tiles.length, unique.length, 16L * tiles.length, uniquePixels, bytesBefore, bytesAfter));
+
+		Metrics.add("compress.pixels", (long) this.height * this.width);
+		Metrics.add("compress.tiles", tiles.length);
+		Metrics.add("compress.uniqueTiles", unique.length);
+		Metrics.stop("compress", start);
+		return output;
+
+	}
+
+	/**
+	* a method that builds a Tile of Pixel objects from samples, leaving the Pixels outside tileHeight rows and tileWidth columns empty
+	* a Tile that replaces equal Tiles must be built whole, since the black samples past the edge for it may be inside the Image for them
+	* @param samples the samples of the Tile, 16 Pixels row by row
+	* @param tileHeight the number of rows to build
+	* @param tileWidth the number of columns to build
+	* @param palette the palette equal Pixels are shared through, or null to make a Pixel for each
+	* @return a new Tile
+	*/
+	private Tile buildTile(int[] samples, int tileHeight, int tileWidth, PixelPalette palette){
+
+		Tile tile = new Tile(grayscale, false);
+		for(int r = 0; r < tileHeight; r++){
+			for(int c = 0; c < tileWidth; c++){
+				int at = (r * TileAddress.SIZE + c) * (grayscale ? 1 : 3);
+				Pixel p;
+				if(grayscale){
+					p = palette != null ? palette.intern(samples[at]) : new Pixel(samples[at]);
+				}
+				else{
+					int red = samples[at], green = samples[at+1], blue = samples[at+2];
+					p = palette != null ? palette.intern(red, green, blue) : new Pixel(red, green, blue);
+				}
+				tile.setPixel(r, c, p);
+			}
+		}
+		return tile;
+
+	}
+
+	/**
+	* A method that checks if the current Image is equal to another Object - shares contents but not memory location
+	* @param other the Object to be compared
+	* @return true/false depending on equality
+	*/
+	public boolean equals(Object other){
+
+		//check if other is instance of image, then compare every tile
+		if(other instanceof Image){
+			return contentEquals((Image) other, false);
+		}
+		return false;
+
+	}
+
+	/**
+	* A method that checks if the current Image holds the same Pixel values as another, stopping at the first Tile that differs
+	* @param other the Image to be compared
+	* @param parallel whether to compare chunks of Tiles on several threads, worthwhile for very large Images
+	* @return true/false depending on equality
+	*/
+	public boolean contentEquals(Image other, boolean parallel){
+
+		if(other == this){
+			return true;
+		}
+		//if dimensions or color scheme don't match
+		if(other.height != this.height || other.width != this.width || other.grayscale != this.grayscale || other.maxval != this.maxval){
+			return false;
+		}
+		//views and mapped Images have no tiles to compare, so compare rows of samples
+		if(this.source != null || other.source != null || this.store != null || other.store != null){
+			return rowsEqual(other, parallel);
+		}
+		//if tileArray elements don't match
+		return Tile.contentEquals(this.tileArray, other.tileArray, parallel);
+
+	}
+
+	/**
+	* A method that compares two Images of equal dimensions row by row, stopping at the first row that differs
+	* @param other the Image to be compared
+	* @param parallel whether to compare bands of rows on several threads
+	* @return true/false depending on equality
+	*/
+	private boolean rowsEqual(Image other, boolean parallel){
+
+		int bands = parallel ? Math.max(1, height / 64) : 1;
+		int rowsPerBand = (height + bands - 1) / Math.max(1, bands);
+		return IntStream.range(0, bands).parallel().allMatch(band -> {
+			int[] a = new int[width * getChannels()];
+			int[] b = new int[width * getChannels()];
+			for(int y = band * rowsPerBand; y < Math.min(height, (band + 1) * rowsPerBand); y++){
+				if(!Arrays.equals(this.getSamples(y, 0, width, a), other.getSamples(y, 0, width, b))){
+					return false;
+				}
+			}
+			return true;
+		});
+
+	}
+
+	/**
+	* A method that returns a hash code consistent with equals(), built from the dimensions and the samples of every row
+	* rows are read through getSamples(), so a view hashes without being materialized, the same as the Image it is equal to
+	* @return the hash code
+	*/
+	public int hashCode(){
+
+		int hash = 1;
+		int[] row = new int[width * getChannels()];
+		for(int y = 0; y < height; y++){
+			hash = 31 * hash + Arrays.hashCode(getSamples(y, 0, width, row));
+		}
+		return 31 * (31 * height + width) + hash;
+
+	}
+
+}
@@ -0,0 +1,251 @@
+import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+* A class that keeps decoded Images of files, so a source used for many derivatives is read and decoded once
+* an entry is found by the real path of its file and is only used while the file's modification time and size are unchanged
+* entries are weighed by Image.footprint() and the least recently used are evicted while they weigh more than maxBytes
+* each Image is also held softly, so the garbage collector may drop entries before the heap runs out
+* get() hands out a clone of the cached Image, which shares its Tiles copy-on-write: callers read the same Tiles without copying,
+* and a caller that writes copies only the Tiles it writes, so the cached Image itself is never changed
+* threads asking for the same file at once wait for a single decode
+* @author Aidan Grupac
+*/
+public class ImageCache{
+
+	/**
+	* a class representing one cached Image, held softly
+	*/
+	private static class Entry extends SoftReference<Image>{
+
+		/**
+		* the real path of the file
+		*/
+		private final Path path;
+		/**
+		* the modification time and size of the file when it was read
+		*/
+		private final long modified, size;
+		/**
+		* the estimated bytes of heap the Image occupies
+		*/
+		private final long weight;
+
+		/**
+		* a constructor that creates an Entry
+		* @param image the decoded Image
+		* @param path the real path of the file
+		* @param modified the modification time of the file
+		* @param size the size of the file
+		* @param queue where the Entry is put once the garbage collector drops the Image
+		*/
+		private Entry(Image image, Path path, long modified, long size, ReferenceQueue<Image> queue){
+
+			super(image, queue);
+			this.path = path;
+			this.modified = modified;
+			this.size = size;
+			this.weight = image.footprint();
+
+		}
+
+	}
+
+	/**
+	* the entries by real path, least recently used first
+	*/
+	private final LinkedHashMap<Path, Entry> entries = new LinkedHashMap<Path, Entry>(16, 0.75f, true);
+	/**
+	* the decodes in progress, by real path, modification time and size
+	*/
+	private final Map<String, FutureTask<Image>> loading = new HashMap<String, FutureTask<Image>>();
+	/**
+	* the entries whose Image the garbage collector has dropped
+	*/
+	private final ReferenceQueue<Image> collected = new ReferenceQueue<Image>();
+	/**
+	* the most bytes of Images kept
+	*/
+	private final long maxBytes;
+	/**
+	* the bytes of Images kept
+	*/
+	private long bytes;
+	/**
+	* counters of lookups found and not found, of entries evicted, and of entries dropped by the garbage collector
+	*/
+	private long hits, misses, evictions, reclaimed;
+
+	/**
+	* a constructor that creates an ImageCache
+	* @param maxBytes the most bytes of Images kept, as estimated by Image.footprint()
+	*/
+	public ImageCache(long maxBytes){
+
+		this.maxBytes = maxBytes;
+
+	}
+
+	/**
+	* a method that creates an ImageCache configured by the system property imaging.imageCache.maxBytes, by default a quarter of the largest heap
+	* @return a new ImageCache, or null if the property is 0 or less
+	*/
+	public static ImageCache fromProperties(){
+
+		long maxBytes = Long.getLong("imaging.imageCache.maxBytes", Runtime.getRuntime().maxMemory() / 4);
+		return maxBytes > 0 ? new ImageCache(maxBytes) : null;
+
+	}
+
+	/**
+	* a method that returns the Image of a PGM/PPM or .cimg file, decoding it only if it isn't cached or the file has changed
+	* @param file the file
+	* @return a copy-on-write clone of the cached Image, which the caller may change freely
+	* @throws IOException if the file can't be read or isn't a valid image
+	*/
+	public Image get(Path file) throws IOException{
+
+		Path path = file.toRealPath();
+		BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+		long modified = attributes.lastModifiedTime().toMillis();
+		long size = attributes.size();
+		String key = path + " " + modified + " " + size;
+
+		FutureTask<Image> task;
+		boolean decode = false;
+		synchronized(this){
+			purge();
+			Entry entry = entries.get(path);
+			if(entry != null && entry.modified == modified && entry.size == size){
+				Image image = entry.get();
+				if(image != null){
+					hits++;
+					return image.clone();
+				}
+			}
+			misses++;
+			task = loading.get(key);
+			if(task == null){
+				task = new FutureTask<Image>(() -> path.toString().endsWith(".cimg") ? CompressedFile.readImage(path.toString()) : Image.load(path.toString()));
+				loading.put(key, task);
+				decode = true;
+			}
+		}
+
+		//decode outside the lock, other threads asking for the same file wait on the task instead
+		Image image;
+		try{
+			if(decode){
+				task.run();
+			}
+			image = task.get();
+		}
+		catch(ExecutionException e){
+			if(e.getCause() instanceof IOException){
+				throw (IOException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		}
+		catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for " + path + ".");
+		}
+		finally{
+			if(decode){
+				synchronized(this){
+					loading.remove(key);
+				}
+			}
+		}
+
+		if(decode){
+			put(new Entry(image, path, modified, size, collected));
+		}
+		return image.clone();
+
+	}
+
+	/**
+	* a method that adds an entry, replacing any for the same file, and evicts the least recently used entries while the rest weigh more than maxBytes
+	* an Image weighing more than maxBytes is not kept
+	* @param entry the entry
+	*/
+	private synchronized void put(Entry entry){
+
+		if(entry.weight > maxBytes){
+			return;
+		}
+		Entry old = entries.put(entry.path, entry);
+		if(old != null){
+			bytes -= old.weight;
+		}
+		bytes += entry.weight;
+		Iterator<Entry> eldest = entries.values().iterator();
+		while(bytes > maxBytes){
+			Entry evicted = eldest.next();
+			eldest.remove();
+			bytes -= evicted.weight;
+			evictions++;
+		}
+
+	}
+
+	/**
+	* a method that removes the entries whose Image the garbage collector has dropped
+	*/
+	private void purge(){
+
+		Entry entry;
+		while((entry = (Entry) collected.poll()) != null){
+			//only remove it if it hasn't already been replaced or evicted
+			if(entries.get(entry.path) == entry){
+				entries.remove(entry.path);
+				bytes -= entry.weight;
+				reclaimed++;
+			}
+		}
+
+	}
+
+	/**
+	* a getter that returns the number of lookups found
+	* @return hits the number of hits
+	*/
+	public synchronized long getHits(){
+
+		return hits;
+
+	}
+
+	/**
+	* a getter that returns the number of lookups not found, including files that had changed
+	* @return misses the number of misses
+	*/
+	public synchronized long getMisses(){
+
+		return misses;
+
+	}
+
+	/**
+	* a method that describes the counters and size of the cache in one line
+	* @return a String such as 40 hits, 2 misses, 0 evictions, 0 reclaimed, 2 images (1048576 bytes)
+	*/
+	public synchronized String toString(){
+
+		purge();
+		return hits + " hits, " + misses + " misses, " + evictions + " evictions, " + reclaimed + " reclaimed, " + entries.size() + " images (" + bytes + " bytes)";
+
+	}
+
+}
@@ -0,0 +1,542 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+* A class that keeps one JVM running and processes images sent to it over HTTP, so small jobs don't each pay for starting a JVM
+* POST /process?ops=... takes a PGM/PPM as the request body and answers with the result, where ops are the operations as Pipeline takes them
+* such as ops=crop+0+0+64+64+rotate+clockwise, and format=binary or format=ascii picks the output encoding, by default that of the upload
+* GET /process?source=...&ops=... runs the operations on a file under the directory given to serveSources() instead, decoded once and kept in an ImageCache
+* GET /health answers 200 while the server is up, and GET /cache describes the caches
+* with a ResultCache, a repeated upload with the same operations is answered from it without being decoded, marked by an X-Cache header
+* requests are handled on a fixed pool of threads larger than maxConcurrent, and at most maxConcurrent of them are processed at once: the rest are answered 503 at once rather than queued
+* uploads larger than maxBytes, or images with more than maxPixels Pixels, are answered 413 before their Tiles are allocated,
+* as are operations with any stage larger than maxPixels, such as a scale or resize, before they run
+* the server listens on the loopback address unless told otherwise, so it can be tried and tested without being reachable from outside
+* @author Aidan Grupac
+*/
+public class ImageServer{
+
+	/**
+	* an exception thrown while reading an upload that turns out larger than the server accepts
+	*/
+	private static class TooLargeException extends IOException{
+
+		/**
+		* the version of the serialized form
+		*/
+		private static final long serialVersionUID = 1L;
+
+		/**
+		* a constructor that creates a TooLargeException
+		* @param message the reason
+		*/
+		private TooLargeException(String message){
+
+			super(message);
+
+		}
+
+	}
+
+	/**
+	* a class representing a channel over a request body that throws once more than a limit of bytes has been read from it
+	* needed because a chunked upload doesn't say its length up front
+	*/
+	private static class LimitedChannel implements ReadableByteChannel{
+
+		/**
+		* the channel read from
+		*/
+		private final ReadableByteChannel channel;
+		/**
+		* the number of bytes that may still be read
+		*/
+		private long remaining;
+
+		/**
+		* a constructor that creates a LimitedChannel
+		* @param in the request body
+		* @param limit the most bytes that may be read
+		*/
+		private LimitedChannel(InputStream in, long limit){
+
+			this.channel = Channels.newChannel(in);
+			this.remaining = limit;
+
+		}
+
+		public int read(ByteBuffer dst) throws IOException{
+
+			int read = channel.read(dst);
+			if(read > 0){
+				remaining -= read;
+				if(remaining < 0){
+					throw new TooLargeException("Upload is larger than the server accepts.");
+				}
+			}
+			return read;
+
+		}
+
+		public boolean isOpen(){
+
+			return channel.isOpen();
+
+		}
+
+		public void close() throws IOException{
+
+			channel.close();
+
+		}
+
+	}
+
+	/**
+	* the HTTP server, created by start()
+	*/
+	private HttpServer server;
+	/**
+	* the threads requests are handled on
+	*/
+	private ExecutorService pool;
+	/**
+	* the permits of requests being processed
+	*/
+	private final Semaphore slots;
+	/**
+	* the address and port to listen on, port 0 picks a free one
+	*/
+	private final InetSocketAddress address;
+	/**
+	* the number of threads handling requests
+	*/
+	private final int threads;
+	/**
+	* the most bytes an upload may have
+	*/
+	private final long maxBytes;
+	/**
+	* the most Pixels an uploaded image may have
+	*/
+	private final long maxPixels;
+	/**
+	* the results of earlier requests, or null to run every request
+	*/
+	private final ResultCache cache;
+	/**
+	* the directory source files are read from, or null if requests can only upload
+	*/
+	private Path root;
+	/**
+	* the decoded source files, or null to decode a source on every request
+	*/
+	private ImageCache images;
+
+	/**
+	* a constructor that creates an ImageServer, which listens once start() is called
+	* @param address the address and port to listen on
+	* @param threads the number of threads handling requests, at least 1
+	* @param maxConcurrent the most requests processed at once, at least 1
+	* @param maxBytes the most bytes an upload may have
+	* @param maxPixels the most Pixels an uploaded image, or any stage of the operations run on an image, may have
+	* @param cache the results of earlier requests, or null to run every request
+	*/
+	public ImageServer(InetSocketAddress address, int threads, int maxConcurrent, long maxBytes, long maxPixels, ResultCache cache){
+
+		if(threads < 1 || maxConcurrent < 1){
+			throw new IllegalArgumentException("Server needs at least 1 thread.");
+		}
+		this.address = address;
+		this.threads = threads;
+		this.slots = new Semaphore(maxConcurrent);
+		this.maxBytes = maxBytes;
+		this.maxPixels = maxPixels;
+		this.cache = cache;
+
+	}
+
+	/**
+	* a method that creates an ImageServer configured by system properties: imaging.server.host (default the loopback address), imaging.server.concurrency (default one per processor),
+	* imaging.server.threads (default twice the concurrency), imaging.server.maxBytes (default 64 MB) and imaging.server.maxPixels (default 16 million),
+	* imaging.server.root (default none, see serveSources()), plus the properties of ResultCache.fromProperties() and ImageCache.fromProperties()
+	* @param port the port to listen on, 0 picks a free one
+	* @return a new ImageServer
+	* @throws IOException if the host can't be resolved, the spill directory can't be created or the root doesn't exist
+	*/
+	public static ImageServer fromProperties(int port) throws IOException{
+
+		String host = System.getProperty("imaging.server.host");
+		InetAddress address = host == null ? InetAddress.getLoopbackAddress() : InetAddress.getByName(host);
+		int concurrency = Integer.getInteger("imaging.server.concurrency", Runtime.getRuntime().availableProcessors());
+		//spare threads keep answering 503 while every permit is taken, instead of leaving requests queued behind busy threads
+		ImageServer server = new ImageServer(new InetSocketAddress(address, port),
+			Integer.getInteger("imaging.server.threads", concurrency * 2),
+			concurrency,
+			Long.getLong("imaging.server.maxBytes", 64L << 20),
+			Long.getLong("imaging.server.maxPixels", 16L << 20),
+			ResultCache.fromProperties());
+		if(System.getProperty("imaging.server.root") != null){
+			server.serveSources(System.getProperty("imaging.server.root"), ImageCache.fromProperties());
+		}
+		return server;
+
+	}
+
+	/**
+	* a method that lets requests name a file under a directory with source=, instead of uploading it
+	* @param root the directory
+	* @param images the decoded source files, or null to decode a source on every request
+	* @throws IOException if the directory doesn't exist
+	*/
+	public void serveSources(String root, ImageCache images) throws IOException{
+
+		this.root = Paths.get(root).toRealPath();
+		this.images = images;
+
+	}
+
+	/**
+	* a method that starts listening
+	* @throws IOException if the address can't be bound
+	*/
+	public void start() throws IOException{
+
+		server = HttpServer.create(address, 0);
+		pool = Executors.newFixedThreadPool(threads);
+		server.setExecutor(pool);
+		server.createContext("/process", this::process);
+		server.createContext("/health", exchange -> respond(exchange, 200, "OK"));
+		server.createContext("/cache", exchange -> respond(exchange, 200, (cache == null ? "Cache is off." : "results: " + cache)
+			+ (images == null ? "" : "\nimages: " + images)));
+		server.start();
+
+	}
+
+	/**
+	* a method that stops listening, giving requests being processed up to a few seconds to finish
+	* @param seconds how long to wait for requests being processed
+	*/
+	public void stop(int seconds){
+
+		server.stop(seconds);
+		pool.shutdown();
+		try{
+			pool.awaitTermination(seconds, TimeUnit.SECONDS);
+		}
+		catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+		}
+
+	}
+
+	/**
+	* a getter that returns the port the server listens on, useful when it was started on port 0
+	* @return the port
+	*/
+	public int getPort(){
+
+		return server.getAddress().getPort();
+
+	}
+
+	/**
+	* a method that handles one POST /process request: checks the limits, reads the upload, runs the Pipeline and sends the result back
+	* @param exchange the request and its response
+	* @throws IOException if the response can't be sent
+	*/
+	private void process(HttpExchange exchange) throws IOException{
+
+		long start = Metrics.start();
+		try{
+			//a request naming a source file sends no upload
+			Map<String, String> query = query(exchange.getRequestURI().getRawQuery());
+			String source = query.get("source");
+			String method = source == null ? "POST" : "GET";
+			if(!exchange.getRequestMethod().equals(method)){
+				exchange.getResponseHeaders().set("Allow", method);
+				respond(exchange, 405, "Use " + method + ".");
+				return;
+			}
+			String length = exchange.getRequestHeaders().getFirst("Content-Length");
+			if(length != null && Long.parseLong(length) > maxBytes){
+				respond(exchange, 413, "Upload is larger than the server accepts.");
+				return;
+			}
+			if(!slots.tryAcquire()){
+				exchange.getResponseHeaders().set("Retry-After", "1");
+				respond(exchange, 503, "Server is busy.");
+				return;
+			}
+			try{
+				String ops = query.get("ops");
+				if(ops == null || ops.trim().isEmpty()){
+					respond(exchange, 400, "No operations given.");
+					return;
+				}
+
+				String[] operations = ops.trim().split("\\s+");
+				String format = query.get("format");
+
+				if(source != null){
+					Path file = resolve(source);
+					if(file == null){
+						respond(exchange, 404, "No source " + source + ".");
+						return;
+					}
+					Image input = images == null ? load(file) : images.get(file);
+					boolean binary = format == null ? file.toString().endsWith(".cimg") || PnmReader.isBinary(file.toString()) : format.equals("binary");
+					run(exchange, plan(input.getHeight(), input.getWidth(), operations), input, binary, null);
+					return;
+				}
+
+				if(cache == null){
+					process(exchange, new LimitedChannel(exchange.getRequestBody(), maxBytes), operations, format, null);
+					return;
+				}
+
+				//with a cache the upload is read whole, since its hash is the key
+				byte[] upload = readUpload(exchange.getRequestBody());
+				String key = ResultCache.key(upload, String.join(" ", operations) + (format == null ? "" : " format " + format));
+				byte[] cached = cache.get(key);
+				if(cached != null){
+					exchange.getResponseHeaders().set("X-Cache", "hit");
+					send(exchange, cached[1] == '2' || cached[1] == '5', cached);
+					return;
+				}
+				exchange.getResponseHeaders().set("X-Cache", "miss");
+				process(exchange, Channels.newChannel(new ByteArrayInputStream(upload)), operations, format, key);
+			}
+			finally{
+				slots.release();
+			}
+		}
+		catch(TooLargeException e){
+			respond(exchange, 413, e.getMessage());
+		}
+		catch(IllegalArgumentException e){
+			respond(exchange, 400, e.getMessage());
+		}
+		catch(IOException e){
+			//a malformed upload; if the response had already started the client sees it cut short
+			respond(exchange, 400, "Couldn't read image: " + e.getMessage());
+		}
+		catch(RuntimeException e){
+			respond(exchange, 500, e.toString());
+		}
+		finally{
+			exchange.close();
+			Metrics.stop("request", start);
+		}
+
+	}
+
+	/**
+	* a method that decodes an upload, runs the Pipeline and sends the result, remembering it in the cache if a key is given
+	* @param exchange the request and its response
+	* @param upload the channel the upload is read from
+	* @param operations the operations, as Pipeline takes them
+	* @param format binary, ascii, or null to answer in the encoding of the upload
+	* @param key the key of the result in the cache, or null to send it back without caching
+	* @throws IOException if the upload can't be read or the response can't be sent
+	*/
+	private void process(HttpExchange exchange, ReadableByteChannel upload, String[] operations, String format, String key) throws IOException{
+
+		PnmReader reader = new PnmReader(upload);
+		if((long) reader.getHeight() * reader.getWidth() > maxPixels){
+			reader.close();
+			respond(exchange, 413, "Image is larger than the server accepts.");
+			return;
+		}
+		//check every stage from the header, before the upload's Tiles are allocated
+		Pipeline pipeline;
+		try{
+			pipeline = plan(reader.getHeight(), reader.getWidth(), operations);
+		}
+		catch(RuntimeException | TooLargeException e){
+			reader.close();
+			throw e;
+		}
+		boolean binary = format == null ? reader.isBinary() : format.equals("binary");
+		run(exchange, pipeline, Image.load(reader), binary, key);
+
+	}
+
+	/**
+	* a method that builds the Pipeline for an input and checks that no stage of it makes an image larger than maxPixels
+	* @param height the height of the input
+	* @param width the width of the input
+	* @param operations the operations, as Pipeline takes them
+	* @return the Pipeline
+	* @throws TooLargeException if a stage would have more than maxPixels Pixels
+	*/
+	private Pipeline plan(int height, int width, String[] operations) throws TooLargeException{
+
+		Pipeline pipeline = new Pipeline(height, width, operations, 0);
+		if(pipeline.getMaxPixels() > maxPixels){
+			throw new TooLargeException("Operations make an image larger than the server accepts.");
+		}
+		return pipeline;
+
+	}
+
+	/**
+	* a method that runs a Pipeline on an Image and sends the result, remembering it in the cache if a key is given
+	* @param exchange the request and its response
+	* @param pipeline the Pipeline, built for the dimensions of input
+	* @param input the Image
+	* @param binary whether to answer with P5/P6 rather than P2/P3
+	* @param key the key of the result in the cache, or null to send it back without caching
+	* @throws IOException if the response can't be sent
+	*/
+	private void run(HttpExchange exchange, Pipeline pipeline, Image input, boolean binary, String key) throws IOException{
+
+		SampleSource result = pipeline.run(input);
+
+		//the result may be a view whose Pixels are only read while encoding, so encode it whole before the status is sent,
+		//and a failure is still answered with an error rather than a 200 cut short
+		ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+		PnmWriter.write(result, Channels.newChannel(encoded), binary);
+		byte[] body = encoded.toByteArray();
+		if(key != null){
+			cache.put(key, body);
+		}
+		exchange.getResponseHeaders().set("X-Pipeline", pipeline.toString());
+		send(exchange, result.isGrayscale(), body);
+
+	}
+
+	/**
+	* a method that finds a source file under the root directory
+	* @param source the name of the file relative to the root
+	* @return the real path of the file, or null if sources are off, the file doesn't exist, or it lies outside the root
+	* @throws IOException if the file can't be resolved
+	*/
+	private Path resolve(String source) throws IOException{
+
+		if(root == null){
+			return null;
+		}
+		Path file = root.resolve(source).normalize();
+		if(!file.startsWith(root) || !Files.isRegularFile(file)){
+			return null;
+		}
+		//the real path as well, so a link inside the root can't lead out of it
+		file = file.toRealPath();
+		return file.startsWith(root) ? file : null;
+
+	}
+
+	/**
+	* a method that reads a source file without the ImageCache
+	* @param file the file
+	* @return a new Image
+	* @throws IOException if the file can't be read or isn't a valid image
+	*/
+	private static Image load(Path file) throws IOException{
+
+		return file.toString().endsWith(".cimg") ? CompressedFile.readImage(file.toString()) : Image.load(file.toString());
+
+	}
+
+	/**
+	* a method that reads a whole upload into memory
+	* @param in the request body
+	* @return the bytes of the upload
+	* @throws IOException if the upload can't be read or is larger than maxBytes
+	*/
+	private byte[] readUpload(InputStream in) throws IOException{
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1 << 16];
+		int read;
+		while((read = in.read(buffer)) > 0){
+			out.write(buffer, 0, read);
+			if(out.size() > maxBytes){
+				throw new TooLargeException("Upload is larger than the server accepts.");
+			}
+		}
+		return out.toByteArray();
+
+	}
+
+	/**
+	* a method that answers 200 with an encoded image
+	* @param exchange the request and its response
+	* @param grayscale whether the image is a PGM rather than a PPM
+	* @param body the encoded image
+	* @throws IOException if the response can't be sent
+	*/
+	private static void send(HttpExchange exchange, boolean grayscale, byte[] body) throws IOException{
+
+		exchange.getResponseHeaders().set("Content-Type", grayscale ? "image/x-portable-graymap" : "image/x-portable-pixmap");
+		exchange.sendResponseHeaders(200, body.length);
+		try(OutputStream out = exchange.getResponseBody()){
+			out.write(body);
+		}
+
+	}
+
+	/**
+	* a method that splits a query string into its decoded parameters
+	* @param raw the query, still encoded, or null
+	* @return the parameters by name
+	*/
+	private static Map<String, String> query(String raw){
+
+		Map<String, String> params = new HashMap<String, String>();
+		if(raw != null){
+			for(String pair : raw.split("&")){
+				int equals = pair.indexOf('=');
+				String name = equals < 0 ? pair : pair.substring(0, equals);
+				String value = equals < 0 ? "" : pair.substring(equals + 1);
+				params.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+			}
+		}
+		return params;
+
+	}
+
+	/**
+	* a method that answers with a status and a line of text, unless a response has already been started
+	* @param exchange the request and its response
+	* @param status the HTTP status
+	* @param message the text of the body
+	* @throws IOException if the response can't be sent
+	*/
+	private static void respond(HttpExchange exchange, int status, String message) throws IOException{
+
+		if(exchange.getResponseCode() != -1){
+			return;
+		}
+		byte[] body = (message + "\n").getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		exchange.sendResponseHeaders(status, body.length);
+		try(OutputStream out = exchange.getResponseBody()){
+			out.write(body);
+		}
+
+	}
+
+}
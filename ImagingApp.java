@@ -1,238 +1,295 @@
-import java.io.File;
-import java.io.PrintWriter;
-
-/**
-* Program takes in an input image, performs operations on it, and saves it to an output image
-* @author Aidan Grupac
-*/
-public class ImagingApp{
-
-	/**
-	* the Image object that will be constructed from the contents of a file
-	*/
-	private static Image inputImage;
-	/**
-	* the Image object that operations are performed on and is saved to a file
-	*/
-	private static Image outputImage;
-	/**
-	* the CompressedImage object that is created when compress() is called
-	*/
-	private static CompressedImage compressedImage;
-
-	/**
-	* Method that serves as driver - takes input, performs operation accordingly, and saves
-	* @param args the command line arguments input by user
-	*/
-	public static void main(String[] args){
-
-		//checks if args has enough arguments
-		if(args.length > 3){
-			//try to create inputImage and outputImage, catch file not found error
-			try{
-				inputImage = new Image(args[0]);
-				outputImage = inputImage.clone();
-			}
-			catch(Exception e){
-				System.out.println("Could not find input file.");
-				System.exit(0);
-			}
-
-			//perform certain operation according to arguments, save image at the end
-			switch(args[2]){
-				case "scale":
-				if(args.length != 4){
-					System.out.println("Incorrect number of parameters.");
-				}
-				else{
-					saveImage(outputImage.scale(Integer.parseInt(args[3])), args[1]);
-				}
-				break;
-
-				case "crop":
-				if(args.length != 7){
-					System.out.println("Incorrect number of parameters.");
-				}
-				else{
-					int topY, topX, height, width;
-					topY = Integer.parseInt(args[3]);
-					topX = Integer.parseInt(args[4]);
-					height = Integer.parseInt(args[5]);
-					width = Integer.parseInt(args[6]);
-					saveImage(outputImage.crop(topY, topX, height, width), args[1]);
-				}
-				break;
-
-				case "flip":
-				if(args.length != 4){
-					System.out.println("Incorrect number of parameters.");
-				}
-				else{
-					saveImage(outputImage.flip(args[3]), args[1]);
-				}
-				break;
-
-				case "rotate":
-				if(args.length != 4){
-					System.out.println("Incorrect number of parameters.");
-				}
-				else{
-					boolean clockwise = false;
-					if(args[3].contains("clockwise") && !args[3].contains("counter")){
-						clockwise = true;
-					}
-
-					saveImage(outputImage.rotate(clockwise), args[1]);
-
-				}
-				break;
-
-				case "compress":
-				if(args.length != 5){
-					System.out.println("Incorrect number of parameters.");
-				}
-				else{
-					boolean tileComp, pixelComp;
-					if(args[3] == "yes" && args[4] == "yes"){
-						tileComp = pixelComp = true;
-					}
-					else if(args[3] == "yes" && args[4] == "no"){
-						tileComp = true;
-						pixelComp = false;
-					}
-					else if(args[3] == "no" && args[4] == "yes"){
-						tileComp = false;
-						pixelComp = true;
-					}
-					else{
-						tileComp = pixelComp = false;
-					}
-
-					saveImage(outputImage.compress(tileComp, pixelComp), args[1]);
-				}
-				break;
-
-				default:
-				System.out.println("Invalid argument.");
-			}
-		}
-		else{
-			System.out.println("Input at least 4 arguments.");
-		}
-
-	}
-
-	/**
-	* Method that takes an Image object and saves it to a file
-	* @param img the Image object that is saved to a file
-	* @param filename the String that is passed into new File() when a new output file is created for saving
-	* @return a true/false value stating whether or not the file was sucessfully found, created, and written to
-	*/
-	public static boolean saveImage(Image img, String filename){
-
-		File imgFile = new File(filename);
-
-		try{
-			PrintWriter fileWriter = new PrintWriter(imgFile);
-
-			boolean grayscale = false;
-			if(filename.contains(".pgm")){
-				grayscale = true;
-			}
-
-			//write grayscale image to file
-			if(grayscale){
-
-				fileWriter.println("P2\n"+img.getWidth()+" "+img.getHeight()+"\n255");
-				//iterate through pixels and print to file
-				for(int i = 0; i < img.getHeight(); i++){
-					for(int j = 0; j < img.getWidth(); j++){
-						Pixel p = img.getPixel(i,j).clone();
-						fileWriter.print(p.toString()+" ");
-					}
-					fileWriter.println();
-				}
-
-			}
-			//write color image to file
-			else{
-
-				fileWriter.println("P3\n"+img.getWidth()+" "+img.getHeight()+"\n255");
-				//iterate through pixels and print to file
-				for(int i = 0; i < img.getHeight(); i++){
-					for(int j = 0; j < img.getWidth(); j++){
-						Pixel p = img.getPixel(i,j).clone();
-						int[] val = p.getValue();
-						fileWriter.println(val[0]+" "+val[1]+" "+val[2]+" ");
-					}
-				}
-			}
-
-			fileWriter.close();
-			return true;
-
-		}
-		catch(Exception e){
-			System.out.println("Couldn't save file.");
-			return false;
-		}
-
-	}
-
-	/**
-	* Method that takes a CompressedImage object and saves it to a file
-	* @param img the CompressedImage object that is saved to a file
-	* @param filename the String that is passed into new File() when a new output file is created for saving
-	* @return a true/false value stating whether or not the file was sucessfully found, created, and written to
-	*/
-	public static boolean saveImage(CompressedImage img, String filename){
-
-		File imgFile = new File(filename);
-		try{
-
-			PrintWriter fileWriter = new PrintWriter(imgFile);
-
-			boolean grayscale = false;
-			if(filename.contains(".pgm")){
-				grayscale = true;
-			}
-
-			if(grayscale){
-
-				fileWriter.println("P2\n"+img.getWidth()+" "+img.getHeight()+"\n255");
-
-				for(int i = 0; i < img.getHeight(); i++){
-					for(int j = 0; j < img.getWidth(); j++){
-						Pixel p = img.getPixel(i,j).clone();
-						fileWriter.print(p.toString()+" ");
-					}
-					fileWriter.println();
-				}
-
-			}
-			else{
-
-				fileWriter.println("P3\n"+img.getWidth()+" "+img.getHeight()+"\n255");
-
-				for(int i = 0; i < img.getHeight(); i++){
-					for(int j = 0; j < img.getWidth(); j++){
-						Pixel p = img.getPixel(i,j).clone();
-						int[] val = p.getValue();
-
-						fileWriter.println(val[0]+" "+val[1]+" "+val[2]+" ");
-					}
-				}
-			}
-
-			fileWriter.close();
-			return true;
-
-		}
-		catch(Exception e){
-			System.out.println("Couldn't save file.");
-			return false;
-		}
-
-	}
-
-}
+import java.util.Arrays;
+
+/**
+* Program takes in an input image, performs operations on it, and saves it to an output image
+* @author Aidan Grupac
+*/
+public class ImagingApp{
+
+	/**
+	* the Image object that will be constructed from the contents of a file
+	*/
+	private static Image inputImage;
+	/**
+	* the Image object that operations are performed on and is saved to a file
+	*/
+	private static Image outputImage;
+	/**
+	* the CompressedImage object that is created when compress() is called
+	*/
+	private static CompressedImage compressedImage;
+	/**
+	* whether the input file is binary (P5/P6), in which case the output file is written the same way
+	*/
+	private static boolean binary;
+
+	/**
+	* Method that serves as driver - takes input, performs operation accordingly, and saves
+	* @param args the command line arguments input by user
+	*/
+	public static void main(String[] args){
+
+		//server mode: images arrive over HTTP, so no file arguments are needed
+		if(args.length > 0 && args[0].equals("serve")){
+			serve(args);
+			return;
+		}
+
+		//batch mode: args[0] is a directory or glob and args[1] a directory, so no single input is loaded
+		if(args.length > 3 && args[2].equals("batch")){
+			batch(args);
+			return;
+		}
+
+		//streaming mode: the input is never loaded whole
+		if(args.length > 3 && args[2].equals("stream")){
+			try{
+				new StreamProcessor(args[0], args[1], Arrays.copyOfRange(args, 3, args.length)).run();
+			}
+			catch(IllegalArgumentException e){
+				System.out.println(e.getMessage());
+			}
+			catch(Exception e){
+				System.out.println("Couldn't stream file: " + e.getMessage());
+			}
+			return;
+		}
+
+		//checks if args has enough arguments
+		if(args.length > 3){
+			//try to create inputImage and outputImage, catch file not found error
+			try{
+				//a .tiles file is mapped read-only rather than loaded, and saved as binary, as is a .cimg file
+				if(args[0].endsWith(".tiles")){
+					inputImage = Image.mapped(MappedTileStore.open(args[0], true));
+					binary = true;
+				}
+				else if(args[0].endsWith(".cimg")){
+					inputImage = CompressedFile.readImage(args[0]);
+					binary = true;
+				}
+				else{
+					inputImage = new Image(args[0]);
+					binary = PnmReader.isBinary(args[0]);
+				}
+				outputImage = inputImage.clone();
+			}
+			catch(Exception e){
+				System.out.println("Could not find input file.");
+				System.exit(0);
+			}
+
+			//perform certain operation according to arguments, save image at the end
+			switch(args[2]){
+				case "scale":
+				if(args.length != 4){
+					System.out.println("Incorrect number of parameters.");
+				}
+				else{
+					saveImage(outputImage.scale(Integer.parseInt(args[3])), args[1], binary);
+				}
+				break;
+
+				case "crop":
+				if(args.length != 7){
+					System.out.println("Incorrect number of parameters.");
+				}
+				else{
+					int topY, topX, height, width;
+					topY = Integer.parseInt(args[3]);
+					topX = Integer.parseInt(args[4]);
+					height = Integer.parseInt(args[5]);
+					width = Integer.parseInt(args[6]);
+					saveImage(outputImage.crop(topY, topX, height, width), args[1], binary);
+				}
+				break;
+
+				case "resize":
+				if(args.length != 5 && args.length != 6){
+					System.out.println("Incorrect number of parameters.");
+				}
+				else{
+					//the filter defaults to box, which suits shrinking
+					Resampler.Kernel kernel = Resampler.Kernel.valueOf(args.length == 6 ? args[5].toUpperCase() : "BOX");
+					saveImage(outputImage.resize(Integer.parseInt(args[3]), Integer.parseInt(args[4]), kernel), args[1], binary);
+				}
+				break;
+
+				case "flip":
+				if(args.length != 4){
+					System.out.println("Incorrect number of parameters.");
+				}
+				else{
+					saveImage(outputImage.flip(args[3]), args[1], binary);
+				}
+				break;
+
+				case "rotate":
+				if(args.length != 4){
+					System.out.println("Incorrect number of parameters.");
+				}
+				else{
+					boolean clockwise = false;
+					if(args[3].contains("clockwise") && !args[3].contains("counter")){
+						clockwise = true;
+					}
+
+					saveImage(outputImage.rotate(clockwise), args[1], binary);
+
+				}
+				break;
+
+				case "compress":
+				if(args.length != 5){
+					System.out.println("Incorrect number of parameters.");
+				}
+				else{
+					boolean tileComp = args[3].equals("yes");
+					boolean pixelComp = args[4].equals("yes");
+
+					saveImage(outputImage.compress(tileComp, pixelComp), args[1], binary);
+				}
+				break;
+
+				case "pipeline":
+				try{
+					Pipeline pipeline = new Pipeline(outputImage.getHeight(), outputImage.getWidth(), args, 3);
+					save(pipeline.run(outputImage), args[1], binary);
+				}
+				catch(IllegalArgumentException e){
+					System.out.println(e.getMessage());
+				}
+				break;
+
+				default:
+				System.out.println("Invalid argument.");
+			}
+		}
+		else{
+			System.out.println("Input at least 4 arguments.");
+		}
+
+	}
+
+	/**
+	* Method that runs the operations following "batch" on every file named by args[0], writing results to the directory args[1]
+	* files are processed on -Dimaging.batch.threads workers, by default one per processor, and each operation runs on its worker's thread alone
+	* @param args the command line arguments input by user
+	*/
+	private static void batch(String[] args){
+
+		int threads = Integer.getInteger("imaging.batch.threads", Runtime.getRuntime().availableProcessors());
+		String[] operations = Arrays.copyOfRange(args, 3, args.length);
+		try{
+			//files already keep every worker busy, splitting each file into bands would only add contention
+			ParallelEngine.setParallelism(1);
+			BatchProcessor processor = new BatchProcessor(args[1], operations, threads);
+			int failed = BatchProcessor.printSummary(processor.run(BatchProcessor.listInputs(args[0])));
+			if(failed > 0){
+				System.exit(1);
+			}
+		}
+		catch(Exception e){
+			System.out.println("Batch failed: " + e.getMessage());
+			System.exit(1);
+		}
+
+	}
+
+	/**
+	* Method that starts an ImageServer on the port args[1], by default 8080, and keeps it running until the JVM is stopped
+	* the limits and the address listened on are set with the -Dimaging.server properties, see ImageServer.fromProperties()
+	* @param args the command line arguments input by user
+	*/
+	private static void serve(String[] args){
+
+		try{
+			ImageServer server = ImageServer.fromProperties(args.length > 1 ? Integer.parseInt(args[1]) : 8080);
+			server.start();
+			Runtime.getRuntime().addShutdownHook(new Thread(() -> server.stop(5)));
+			System.out.println("Listening on port " + server.getPort() + ".");
+		}
+		catch(Exception e){
+			System.out.println("Couldn't start server: " + e.getMessage());
+			System.exit(1);
+		}
+
+	}
+
+	/**
+	* Method that takes an Image object and saves it to an ASCII (P2/P3) file
+	* @param img the Image object that is saved to a file
+	* @param filename the String naming the output file
+	* @return a true/false value stating whether or not the file was sucessfully found, created, and written to
+	*/
+	public static boolean saveImage(Image img, String filename){
+
+		return save(img, filename, false);
+
+	}
+
+	/**
+	* Method that takes a CompressedImage object and saves it to an ASCII (P2/P3) file
+	* @param img the CompressedImage object that is saved to a file
+	* @param filename the String naming the output file
+	* @return a true/false value stating whether or not the file was sucessfully found, created, and written to
+	*/
+	public static boolean saveImage(CompressedImage img, String filename){
+
+		return save(img, filename, false);
+
+	}
+
+	/**
+	* Method that takes an Image object and saves it to a binary (P5/P6) or ASCII (P2/P3) file
+	* @param img the Image object that is saved to a file
+	* @param filename the String naming the output file
+	* @param binary whether to write a binary file
+	* @return a true/false value stating whether or not the file was sucessfully found, created, and written to
+	*/
+	public static boolean saveImage(Image img, String filename, boolean binary){
+
+		return save(img, filename, binary);
+
+	}
+
+	/**
+	* Method that takes a CompressedImage object and saves it to a binary (P5/P6) or ASCII (P2/P3) file
+	* @param img the CompressedImage object that is saved to a file
+	* @param filename the String naming the output file
+	* @param binary whether to write a binary file
+	* @return a true/false value stating whether or not the file was sucessfully found, created, and written to
+	*/
+	public static boolean saveImage(CompressedImage img, String filename, boolean binary){
+
+		return save(img, filename, binary);
+
+	}
+
+	/**
+	* Method that writes any image to a file through PnmWriter, or a CompressedImage through CompressedFile when filename ends in .cimg, shared by every saveImage()
+	* @param img the image that is saved to a file
+	* @param filename the String naming the output file
+	* @param binary whether to write a binary file
+	* @return a true/false value stating whether or not the file was sucessfully created and written to
+	*/
+	private static boolean save(SampleSource img, String filename, boolean binary){
+
+		try{
+			//a CompressedImage saved under .cimg keeps its shared Tiles and Pixels instead of being expanded
+			if(img instanceof CompressedImage && filename.endsWith(".cimg")){
+				long bytes = CompressedFile.write((CompressedImage) img, filename);
+				System.out.println("Saved " + CompressedFile.report((CompressedImage) img, bytes) + ".");
+				return true;
+			}
+			PnmWriter.write(img, filename, binary);
+			return true;
+		}
+		catch(Exception e){
+			System.out.println("Couldn't save file.");
+			return false;
+		}
+
+	}
+
+}
@@ -0,0 +1,372 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+* A class that keeps the Tiles of an Image in a memory-mapped file instead of on the heap, so rasters larger than the heap can be read and written
+* the file keeps the 4x4 Tile layout: a 32 byte header, then every Tile in tileArray order, each holding its 16 Pixels row by row
+* a Pixel is 1 or 3 samples, each one byte, or two bytes most significant first when maxval is above 255
+* reading or writing a run of a row touches one short stretch of each Tile it crosses, and a whole Tile sits within one page
+* a file opened read-only can be mapped by several processes at once
+* @author Aidan Grupac
+*/
+public class MappedTileStore implements AutoCloseable{
+
+	/**
+	* the bytes at the start of every file, "TILE" in ASCII
+	*/
+	private static final int MAGIC = 0x54494C45;
+	/**
+	* the size of the header
+	*/
+	private static final int HEADER = 32;
+	/**
+	* the most bytes mapped by one buffer, a multiple of every Tile size
+	*/
+	private static final int REGION = 3 << 28;
+
+	/**
+	* the file the Tiles are stored in
+	*/
+	private FileChannel channel;
+	/**
+	* the mapped regions of the file, each holding tilesPerRegion Tiles
+	*/
+	private MappedByteBuffer[] regions;
+	/**
+	* integers representing the dimensions and maximum sample value of the stored image
+	*/
+	private int height, width, maxval;
+	/**
+	* whether the stored image is grayscale
+	*/
+	private boolean grayscale;
+	/**
+	* whether the file was opened without write access
+	*/
+	private boolean readOnly;
+	/**
+	* the number of samples per Pixel, the bytes per sample and the bytes per Tile
+	*/
+	private int channels, sampleBytes, tileBytes;
+	/**
+	* the number of Tiles held by each mapped region
+	*/
+	private int tilesPerRegion;
+
+	/**
+	* a private constructor, MappedTileStores are made by create() and open()
+	*/
+	private MappedTileStore(){
+
+	}
+
+	/**
+	* a method that creates a file for an image of the given shape, or replaces one, and maps it for reading and writing
+	* every Pixel starts as 0
+	* @param filename the name of the file
+	* @param height the height of the image
+	* @param width the width of the image
+	* @param grayscale the color scheme of the image
+	* @param maxval the maximum sample value
+	* @return a new MappedTileStore
+	* @throws IOException if the file can't be created or mapped
+	*/
+	public static MappedTileStore create(String filename, int height, int width, boolean grayscale, int maxval) throws IOException{
+
+		MappedTileStore store = new MappedTileStore();
+		store.shape(height, width, grayscale, maxval);
+		store.channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+			StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try{
+			ByteBuffer header = ByteBuffer.allocate(HEADER);
+			header.putInt(MAGIC).putInt(1).putInt(height).putInt(width).putInt(grayscale ? 1 : 3).putInt(maxval);
+			header.clear();
+			while(header.hasRemaining()){
+				store.channel.write(header, header.position());
+			}
+			store.map(FileChannel.MapMode.READ_WRITE);
+		}
+		catch(IOException e){
+			store.channel.close();
+			throw e;
+		}
+		return store;
+
+	}
+
+	/**
+	* a method that maps an existing file
+	* @param filename the name of the file
+	* @param readOnly true to map the file without write access, so it can be shared and setSamples() throws
+	* @return a new MappedTileStore
+	* @throws IOException if the file can't be opened, isn't a Tile file or is too short
+	*/
+	public static MappedTileStore open(String filename, boolean readOnly) throws IOException{
+
+		MappedTileStore store = new MappedTileStore();
+		store.channel = readOnly ? FileChannel.open(Paths.get(filename), StandardOpenOption.READ)
+			: FileChannel.open(Paths.get(filename), StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try{
+			ByteBuffer header = ByteBuffer.allocate(HEADER);
+			while(header.hasRemaining()){
+				if(store.channel.read(header, header.position()) < 0){
+					break;
+				}
+			}
+			header.flip();
+			if(header.remaining() < HEADER || header.getInt() != MAGIC || header.getInt() != 1){
+				throw new IOException("Not a Tile file.");
+			}
+			int height = header.getInt();
+			int width = header.getInt();
+			int channels = header.getInt();
+			int maxval = header.getInt();
+			if(height < 0 || width < 0 || (channels != 1 && channels != 3) || maxval < 1 || maxval > 65535){
+				throw new IOException("Invalid Tile file header.");
+			}
+			store.shape(height, width, channels == 1, maxval);
+			if(store.channel.size() < HEADER + (long) TileAddress.tileCount(height, width) * store.tileBytes){
+				throw new IOException("Tile file is truncated.");
+			}
+			store.readOnly = readOnly;
+			store.map(readOnly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE);
+		}
+		catch(IOException e){
+			store.channel.close();
+			throw e;
+		}
+		return store;
+
+	}
+
+	/**
+	* a method that copies a PGM/PPM file into a new Tile file one row at a time, so neither needs to fit on the heap
+	* @param pnm the name of the PGM/PPM file
+	* @param filename the name of the Tile file
+	* @return a new MappedTileStore holding the image, open for reading and writing
+	* @throws IOException if either file can't be read or written, in which case the Tile file is deleted rather than left half filled
+	*/
+	public static MappedTileStore importPnm(String pnm, String filename) throws IOException{
+
+		try(PnmReader reader = new PnmReader(pnm)){
+			MappedTileStore store = create(filename, reader.getHeight(), reader.getWidth(), reader.isGrayscale(), reader.getMaxval());
+			try{
+				int[] row = new int[reader.getWidth() * store.channels];
+				for(int y = 0; y < reader.getHeight(); y++){
+					reader.readRow(row);
+					store.setSamples(y, 0, reader.getWidth(), row, 0);
+				}
+			}
+			catch(IOException | RuntimeException e){
+				store.channel.close();
+				Files.deleteIfExists(Paths.get(filename));
+				throw e;
+			}
+			return store;
+		}
+
+	}
+
+	/**
+	* a method that fills in the shape of the stored image and the sizes that follow from it
+	* @param height the height of the image
+	* @param width the width of the image
+	* @param grayscale the color scheme of the image
+	* @param maxval the maximum sample value
+	*/
+	private void shape(int height, int width, boolean grayscale, int maxval){
+
+		this.height = height;
+		this.width = width;
+		this.grayscale = grayscale;
+		this.maxval = maxval;
+		this.channels = grayscale ? 1 : 3;
+		this.sampleBytes = maxval > 255 ? 2 : 1;
+		this.tileBytes = 16 * channels * sampleBytes;
+		this.tilesPerRegion = REGION / tileBytes;
+
+	}
+
+	/**
+	* a method that maps the Tiles of the file, growing it first when mapping for writing
+	* @param mode the access the mapping allows
+	* @throws IOException if the file can't be mapped
+	*/
+	private void map(FileChannel.MapMode mode) throws IOException{
+
+		long tiles = TileAddress.tileCount(height, width);
+		int count = (int) ((tiles + tilesPerRegion - 1) / tilesPerRegion);
+		regions = new MappedByteBuffer[count];
+		for(int r = 0; r < count; r++){
+			long first = (long) r * tilesPerRegion;
+			long size = Math.min(tilesPerRegion, tiles - first) * tileBytes;
+			regions[r] = channel.map(mode, HEADER + first * tileBytes, size);
+		}
+
+	}
+
+	/**
+	* a getter that returns the height of the stored image
+	* @return height the height
+	*/
+	public int getHeight(){
+
+		return height;
+
+	}
+
+	/**
+	* a getter that returns the width of the stored image
+	* @return width the width
+	*/
+	public int getWidth(){
+
+		return width;
+
+	}
+
+	/**
+	* a getter that returns whether the stored image is grayscale
+	* @return grayscale the color scheme
+	*/
+	public boolean isGrayscale(){
+
+		return grayscale;
+
+	}
+
+	/**
+	* a getter that returns the maximum sample value of the stored image
+	* @return maxval the maximum sample value
+	*/
+	public int getMaxval(){
+
+		return maxval;
+
+	}
+
+	/**
+	* a getter that returns whether the file was opened without write access
+	* @return true if setSamples() will throw
+	*/
+	public boolean isReadOnly(){
+
+		return readOnly;
+
+	}
+
+	/**
+	* a method that copies the samples of a run of Pixels from row y into an array, one Tile at a time
+	* the caller checks the run lies within the image
+	* @param y the row location
+	* @param x the starting column location
+	* @param length the number of Pixels to copy
+	* @param dest the array receiving the samples
+	* @param destPos the starting index within dest
+	*/
+	public void getSamples(int y, int x, int length, int[] dest, int destPos){
+
+		int copied = 0;
+		while(copied < length){
+			int column = x + copied;
+			int count = Math.min(TileAddress.SIZE - (column & 3), length - copied);
+			int tile = TileAddress.tileIndex(y, column, width);
+			MappedByteBuffer region = regions[tile / tilesPerRegion];
+			int at = (tile % tilesPerRegion) * tileBytes + TileAddress.offset(y & 3, column & 3) * channels * sampleBytes;
+			for(int i = 0; i < count * channels; i++){
+				if(sampleBytes == 1){
+					dest[destPos++] = region.get(at++) & 0xFF;
+				}
+				else{
+					dest[destPos++] = region.getShort(at) & 0xFFFF;
+					at += 2;
+				}
+			}
+			copied += count;
+		}
+
+	}
+
+	/**
+	* a method that replaces the samples of a run of Pixels in row y with samples from an array, one Tile at a time
+	* the caller checks the run lies within the image
+	* @param y the row location
+	* @param x the starting column location
+	* @param length the number of Pixels to replace
+	* @param src the array holding the samples
+	* @param srcPos the starting index within src
+	* @throws java.nio.ReadOnlyBufferException if the file was opened read-only
+	*/
+	public void setSamples(int y, int x, int length, int[] src, int srcPos){
+
+		int copied = 0;
+		while(copied < length){
+			int column = x + copied;
+			int count = Math.min(TileAddress.SIZE - (column & 3), length - copied);
+			int tile = TileAddress.tileIndex(y, column, width);
+			MappedByteBuffer region = regions[tile / tilesPerRegion];
+			int at = (tile % tilesPerRegion) * tileBytes + TileAddress.offset(y & 3, column & 3) * channels * sampleBytes;
+			for(int i = 0; i < count * channels; i++){
+				if(sampleBytes == 1){
+					region.put(at++, (byte) src[srcPos++]);
+				}
+				else{
+					region.putShort(at, (short) src[srcPos++]);
+					at += 2;
+				}
+			}
+			copied += count;
+		}
+
+	}
+
+	/**
+	* a method that copies one stored Tile onto the heap
+	* @param index the position of the Tile in tileArray order
+	* @return a new Tile, packed unless it holds 16-bit color
+	*/
+	public Tile getTile(int index){
+
+		int tilesAcross = TileAddress.tilesAcross(width);
+		int y = (index / tilesAcross) * TileAddress.SIZE;
+		int x = (index % tilesAcross) * TileAddress.SIZE;
+		Tile tile = new Tile(grayscale, grayscale || maxval <= 255);
+		int[] row = new int[TileAddress.SIZE * channels];
+		for(int r = 0; r < TileAddress.SIZE; r++){
+			getSamples(y + r, x, TileAddress.SIZE, row, 0);
+			tile.setSamples(r, 0, TileAddress.SIZE, row, 0);
+		}
+		return tile;
+
+	}
+
+	/**
+	* a method that writes every change made through the mapping out to the file
+	*/
+	public void force(){
+
+		if(!readOnly){
+			for(MappedByteBuffer region : regions){
+				region.force();
+			}
+		}
+
+	}
+
+	/**
+	* a method that flushes changes and closes the file; the mapping itself lasts until it is garbage collected
+	* @throws IOException if the file can't be closed
+	*/
+	public void close() throws IOException{
+
+		force();
+		channel.close();
+
+	}
+
+}
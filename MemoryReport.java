@@ -0,0 +1,42 @@
+/**
+* Program that prints the estimated heap used by an Image stored as Pixel objects compared to packed Tiles
+* @author Aidan Grupac
+*/
+public class MemoryReport{
+
+	/**
+	* Method that serves as driver - prints a report for the given dimensions, or a 24 megapixel (6000x4000) image by default
+	* @param args optionally the height and width of the Image
+	*/
+	public static void main(String[] args){
+
+		int height = 4000;
+		int width = 6000;
+		if(args.length == 2){
+			height = Integer.parseInt(args[0]);
+			width = Integer.parseInt(args[1]);
+		}
+
+		System.out.println("Estimated heap for a " + width + "x" + height + " image:");
+		System.out.println(String.format("%-10s %14s %14s %8s", "scheme", "Pixel objects", "packed", "ratio"));
+		printRow("grayscale", height, width, true);
+		printRow("color", height, width, false);
+
+	}
+
+	/**
+	* Method that prints one line of the report
+	* @param label the name of the color scheme
+	* @param height the height of the Image
+	* @param width the width of the Image
+	* @param grayscale the color scheme of the Image
+	*/
+	private static void printRow(String label, int height, int width, boolean grayscale){
+
+		long objects = Image.estimateFootprint(height, width, grayscale, false);
+		long packed = Image.estimateFootprint(height, width, grayscale, true);
+		System.out.println(String.format("%-10s %11.1f MB %11.1f MB %7.1fx", label, objects / 1048576.0, packed / 1048576.0, (double) objects / packed));
+
+	}
+
+}
@@ -0,0 +1,393 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.ObjectName;
+
+/**
+* A class that records how long each stage of reading, transforming, compressing and writing Images takes, and counts bytes, Pixels and Tiles
+* recording is off unless the JVM is started with -Dimaging.metrics=true; ENABLED is a constant, so when it is off the JIT removes every check
+* and a stage costs two calls that return at once
+* while on, the latencies of each stage go into a Histogram and the counters into LongAdders, both safe to update from any thread,
+* and everything is readable over JMX as imaging:type=Metrics and written as JSON when the JVM exits, to -Dimaging.metrics.file or else standard error
+* -Dimaging.metrics.trace=true also prints one line per stage as it finishes
+* @author Aidan Grupac
+*/
+public class Metrics{
+
+	/**
+	* whether anything is recorded
+	*/
+	public static final boolean ENABLED = Boolean.getBoolean("imaging.metrics");
+	/**
+	* whether each stage is printed as it finishes
+	*/
+	private static final boolean TRACE = ENABLED && Boolean.getBoolean("imaging.metrics.trace");
+
+	/**
+	* the latencies of each stage, by name
+	*/
+	private static final Map<String, Histogram> stages = new ConcurrentHashMap<String, Histogram>();
+	/**
+	* the counters, by name
+	*/
+	private static final Map<String, LongAdder> counters = new ConcurrentHashMap<String, LongAdder>();
+
+	static{
+		if(ENABLED){
+			register();
+			Runtime.getRuntime().addShutdownHook(new Thread(Metrics::dump));
+		}
+	}
+
+	/**
+	* a class that counts values in buckets whose width grows with the value, as HdrHistogram does, so any percentile is known to within 1/16 of itself in fixed space
+	* values below 16 have a bucket each; above that, each power of two is split into 16 buckets
+	*/
+	public static class Histogram{
+
+		/**
+		* the number of bits of a value kept by its bucket
+		*/
+		private static final int SUB_BITS = 4;
+		/**
+		* the number of buckets per power of two
+		*/
+		private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+		/**
+		* the number of values in each bucket
+		*/
+		private final AtomicLongArray buckets = new AtomicLongArray((64 - SUB_BITS) * SUB_BUCKETS);
+		/**
+		* the number and sum of the values
+		*/
+		private final LongAdder count = new LongAdder(), total = new LongAdder();
+		/**
+		* the largest value
+		*/
+		private final AtomicLong max = new AtomicLong();
+
+		/**
+		* a method that adds a value
+		* @param value the value, 0 or more
+		*/
+		public void record(long value){
+
+			value = Math.max(0, value);
+			buckets.incrementAndGet(bucket(value));
+			count.increment();
+			total.add(value);
+			max.accumulateAndGet(value, Math::max);
+
+		}
+
+		/**
+		* a method that finds the bucket of a value
+		* @param value the value
+		* @return the index of its bucket
+		*/
+		private static int bucket(long value){
+
+			if(value < SUB_BUCKETS){
+				return (int) value;
+			}
+			int magnitude = 63 - Long.numberOfLeadingZeros(value);
+			int shift = magnitude - SUB_BITS;
+			return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+
+		}
+
+		/**
+		* a method that finds the largest value a bucket holds
+		* @param index the index of the bucket
+		* @return the largest value in it
+		*/
+		private static long highest(int index){
+
+			if(index < SUB_BUCKETS){
+				return index;
+			}
+			int shift = index / SUB_BUCKETS - 1;
+			long lowest = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+			return lowest + (1L << shift) - 1;
+
+		}
+
+		/**
+		* a getter that returns the number of values
+		* @return the count
+		*/
+		public long getCount(){
+
+			return count.sum();
+
+		}
+
+		/**
+		* a getter that returns the sum of the values
+		* @return the total
+		*/
+		public long getTotal(){
+
+			return total.sum();
+
+		}
+
+		/**
+		* a getter that returns the largest value
+		* @return the maximum
+		*/
+		public long getMax(){
+
+			return max.get();
+
+		}
+
+		/**
+		* a method that estimates a percentile, as the largest value of the bucket it falls in, capped at the largest value seen
+		* @param percent the percentile, from 0 to 100
+		* @return a value no more than 1/16 above the true percentile, or 0 if there are no values
+		*/
+		public long percentile(double percent){
+
+			long n = getCount();
+			if(n == 0){
+				return 0;
+			}
+			long rank = Math.max(1, (long) Math.ceil(n * percent / 100));
+			long seen = 0;
+			for(int i = 0; i < buckets.length(); i++){
+				seen += buckets.get(i);
+				if(seen >= rank){
+					return Math.min(highest(i), getMax());
+				}
+			}
+			return getMax();
+
+		}
+
+	}
+
+	/**
+	* an interface for reading the metrics over JMX
+	*/
+	public interface MetricsMXBean{
+
+		/**
+		* a getter that returns every counter
+		* @return the counters by name
+		*/
+		Map<String, Long> getCounters();
+
+		/**
+		* a getter that describes the latencies of every stage
+		* @return lines such as count=12 p50=840us p99=1210us max=1302us, by stage
+		*/
+		Map<String, String> getStages();
+
+		/**
+		* a getter that returns everything recorded as JSON, as written when the JVM exits
+		* @return the JSON
+		*/
+		String getJson();
+
+		/**
+		* a method that clears every stage and counter
+		*/
+		void reset();
+
+	}
+
+	/**
+	* a class that serves the metrics over JMX
+	*/
+	private static class Bean implements MetricsMXBean{
+
+		public Map<String, Long> getCounters(){
+
+			Map<String, Long> out = new TreeMap<String, Long>();
+			for(Map.Entry<String, LongAdder> counter : counters.entrySet()){
+				out.put(counter.getKey(), counter.getValue().sum());
+			}
+			return out;
+
+		}
+
+		public Map<String, String> getStages(){
+
+			Map<String, String> out = new TreeMap<String, String>();
+			for(Map.Entry<String, Histogram> stage : stages.entrySet()){
+				Histogram h = stage.getValue();
+				out.put(stage.getKey(), "count=" + h.getCount() + " p50=" + h.percentile(50) / 1000 + "us p99=" + h.percentile(99) / 1000 + "us max=" + h.getMax() / 1000 + "us");
+			}
+			return out;
+
+		}
+
+		public String getJson(){
+
+			return toJson();
+
+		}
+
+		public void reset(){
+
+			stages.clear();
+			counters.clear();
+
+		}
+
+	}
+
+	/**
+	* a private constructor, Metrics only holds static helpers
+	*/
+	private Metrics(){
+
+	}
+
+	/**
+	* a method that marks the start of a stage
+	* @return the time to pass to stop(), or 0 when recording is off
+	*/
+	public static long start(){
+
+		return ENABLED ? System.nanoTime() : 0;
+
+	}
+
+	/**
+	* a method that marks the end of a stage and records how long it took
+	* @param stage the name of the stage, such as read or compress
+	* @param start the value start() returned
+	*/
+	public static void stop(String stage, long start){
+
+		if(ENABLED){
+			long nanos = System.nanoTime() - start;
+			stages.computeIfAbsent(stage, name -> new Histogram()).record(nanos);
+			if(TRACE){
+				System.err.println("[metrics] " + Thread.currentThread().getName() + " " + stage + " " + nanos / 1000 + "us");
+			}
+		}
+
+	}
+
+	/**
+	* a method that adds to a counter
+	* @param counter the name of the counter, such as read.bytes
+	* @param amount the amount to add
+	*/
+	public static void add(String counter, long amount){
+
+		if(ENABLED){
+			counters.computeIfAbsent(counter, name -> new LongAdder()).add(amount);
+		}
+
+	}
+
+	/**
+	* a getter that returns the latencies of a stage
+	* @param stage the name of the stage
+	* @return its Histogram, or null if it hasn't run
+	*/
+	public static Histogram getStage(String stage){
+
+		return stages.get(stage);
+
+	}
+
+	/**
+	* a getter that returns the value of a counter
+	* @param counter the name of the counter
+	* @return its value, 0 if it was never added to
+	*/
+	public static long getCounter(String counter){
+
+		LongAdder adder = counters.get(counter);
+		return adder == null ? 0 : adder.sum();
+
+	}
+
+	/**
+	* a method that writes everything recorded as JSON: each stage's latencies in microseconds, each counter, and the ratio of Tiles to distinct Tiles over every compress
+	* @return the JSON
+	*/
+	public static String toJson(){
+
+		StringBuilder out = new StringBuilder("{\n  \"stages\": {");
+		String separator = "\n";
+		String end = "";
+		for(Map.Entry<String, Histogram> stage : new TreeMap<String, Histogram>(stages).entrySet()){
+			Histogram h = stage.getValue();
+			long count = h.getCount();
+			out.append(separator).append("    \"").append(stage.getKey()).append("\": {")
+				.append("\"count\": ").append(count)
+				.append(", \"totalMicros\": ").append(h.getTotal() / 1000)
+				.append(", \"meanMicros\": ").append(count == 0 ? 0 : h.getTotal() / count / 1000)
+				.append(", \"p50Micros\": ").append(h.percentile(50) / 1000)
+				.append(", \"p90Micros\": ").append(h.percentile(90) / 1000)
+				.append(", \"p99Micros\": ").append(h.percentile(99) / 1000)
+				.append(", \"maxMicros\": ").append(h.getMax() / 1000).append("}");
+			separator = ",\n";
+			end = "\n  ";
+		}
+		out.append(end).append("},\n  \"counters\": {");
+		separator = "\n";
+		end = "";
+		for(Map.Entry<String, LongAdder> counter : new TreeMap<String, LongAdder>(counters).entrySet()){
+			out.append(separator).append("    \"").append(counter.getKey()).append("\": ").append(counter.getValue().sum());
+			separator = ",\n";
+			end = "\n  ";
+		}
+		long tiles = getCounter("compress.tiles");
+		long unique = getCounter("compress.uniqueTiles");
+		out.append(end).append("},\n  \"tileDedupRatio\": ").append(unique == 0 ? "null" : String.format(Locale.ROOT, "%.3f", (double) tiles / unique)).append("\n}\n");
+		return out.toString();
+
+	}
+
+	/**
+	* a method that registers the MXBean, leaving metrics off JMX if that fails
+	*/
+	private static void register(){
+
+		try{
+			ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(), new ObjectName("imaging:type=Metrics"));
+		}
+		catch(Exception e){
+			System.err.println("Couldn't register metrics with JMX: " + e);
+		}
+
+	}
+
+	/**
+	* a method that writes the JSON to -Dimaging.metrics.file, or to standard error if it isn't set or can't be written
+	*/
+	private static void dump(){
+
+		String json = toJson();
+		String file = System.getProperty("imaging.metrics.file");
+		if(file != null){
+			try{
+				Files.write(Paths.get(file), json.getBytes(StandardCharsets.UTF_8));
+				return;
+			}
+			catch(IOException e){
+				System.err.println("Couldn't write metrics to " + file + ": " + e.getMessage());
+			}
+		}
+		System.err.print(json);
+
+	}
+
+}
@@ -0,0 +1,150 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+* A class that runs Image operations on several threads by splitting the rows of the output into bands of whole Tile rows
+* each band writes only to its own Tiles, so bands share no mutable state and the result matches a single-threaded run
+* the number of threads defaults to the number of processors and can be set with -Dimaging.parallelism=n or setParallelism()
+* @author Aidan Grupac
+*/
+public class ParallelEngine{
+
+	/**
+	* the smallest number of rows worth handing to another thread
+	*/
+	private static final int MIN_BAND_ROWS = 32;
+
+	/**
+	* the number of threads operations may use, 1 runs everything on the calling thread
+	*/
+	private static int parallelism = Integer.getInteger("imaging.parallelism", Runtime.getRuntime().availableProcessors());
+	/**
+	* the pool bands run in, created when first needed and replaced when the parallelism changes
+	*/
+	private static volatile ForkJoinPool pool;
+
+	/**
+	* an interface for work done on one band of rows
+	*/
+	public interface BandTask{
+
+		/**
+		* a method that processes rows from (inclusive) to to (exclusive)
+		* @param from the first row of the band, a multiple of 4
+		* @param to one past the last row of the band
+		*/
+		void run(int from, int to);
+
+	}
+
+	/**
+	* a private constructor, ParallelEngine only holds static helpers
+	*/
+	private ParallelEngine(){
+
+	}
+
+	/**
+	* a getter that returns the number of threads operations may use
+	* @return parallelism the number of threads
+	*/
+	public static synchronized int getParallelism(){
+
+		return parallelism;
+
+	}
+
+	/**
+	* a setter that changes the number of threads operations may use
+	* the old pool is dropped rather than shut down, since another thread may be about to submit bands to it;
+	* it finishes what it was given and its idle threads then exit on their own
+	* @param threads the number of threads, at least 1
+	*/
+	public static synchronized void setParallelism(int threads){
+
+		if(threads < 1){
+			throw new IllegalArgumentException("Parallelism must be at least 1.");
+		}
+		if(threads != parallelism){
+			pool = null;
+		}
+		parallelism = threads;
+
+	}
+
+	/**
+	* a method that returns the pool, creating it for the current parallelism if needed
+	* @return the pool
+	*/
+	private static ForkJoinPool pool(){
+
+		ForkJoinPool current = pool;
+		if(current != null){
+			return current;
+		}
+		synchronized(ParallelEngine.class){
+			if(pool == null){
+				pool = new ForkJoinPool(parallelism);
+			}
+			return pool;
+		}
+
+	}
+
+	/**
+	* a method that splits rows 0 to rows into bands of whole Tile rows and runs task on each, waiting for all of them
+	* @param rows the number of rows of the output
+	* @param task the work to do on each band
+	*/
+	public static void forEachBand(int rows, BandTask task){
+
+		int threads = getParallelism();
+		if(threads == 1 || rows <= MIN_BAND_ROWS){
+			task.run(0, rows);
+			return;
+		}
+
+		//a few bands per thread keeps threads busy when bands take different times
+		int tileRows = (rows + TileAddress.SIZE - 1) / TileAddress.SIZE;
+		int bands = Math.min(threads * 4, Math.max(1, rows / MIN_BAND_ROWS));
+		int tileRowsPerBand = (tileRows + bands - 1) / bands;
+		int bandRows = tileRowsPerBand * TileAddress.SIZE;
+
+		List<Callable<Void>> work = new ArrayList<Callable<Void>>();
+		for(int from = 0; from < rows; from += bandRows){
+			final int start = from;
+			final int end = Math.min(rows, from + bandRows);
+			work.add(() -> {
+				task.run(start, end);
+				return null;
+			});
+		}
+
+		//rethrow the first failure as if the task had run on this thread
+		for(Future<Void> result : pool().invokeAll(work)){
+			try{
+				result.get();
+			}
+			catch(InterruptedException e){
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			}
+			catch(ExecutionException e){
+				Throwable cause = e.getCause();
+				if(cause instanceof RuntimeException){
+					throw (RuntimeException) cause;
+				}
+				if(cause instanceof Error){
+					throw (Error) cause;
+				}
+				throw new RuntimeException(cause);
+			}
+		}
+
+	}
+
+}
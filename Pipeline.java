@@ -0,0 +1,295 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+* A class representing a chain of operations given in one ImagingApp invocation, such as crop 0 0 64 64 rotate clockwise scale 2
+* adjacent crops, flips and rotations are fused into a single CoordinateMap, so each run of them costs one pass over the Pixels however long it is
+* scale and compress read straight through the fused map, so no intermediate Image is built between stages
+* @author Aidan Grupac
+*/
+public class Pipeline{
+
+	/**
+	* a class representing one stage of a Pipeline: either a fused run of geometric operations or a single scale, resize or compress
+	*/
+	private static class Stage{
+
+		/**
+		* the operation, "transform", "scale", "resize" or "compress"
+		*/
+		private final String name;
+		/**
+		* the operations fused into a transform stage, for describing the Pipeline
+		*/
+		private final List<String> fused = new ArrayList<String>();
+		/**
+		* the map from the output of a transform stage to its input
+		*/
+		private CoordinateMap map;
+		/**
+		* the dimensions of the output of the stage
+		*/
+		private int height, width;
+		/**
+		* the scale factor of a scale stage
+		*/
+		private int factor;
+		/**
+		* the filter of a resize stage
+		*/
+		private Resampler.Kernel kernel;
+		/**
+		* the options of a compress stage
+		*/
+		private boolean tileComp, pixelComp;
+
+		/**
+		* a constructor that creates an empty Stage
+		* @param name the operation
+		*/
+		private Stage(String name){
+
+			this.name = name;
+
+		}
+
+	}
+
+	/**
+	* the stages in the order they run
+	*/
+	private final List<Stage> stages = new ArrayList<Stage>();
+	/**
+	* the dimensions of the input the Pipeline was built for
+	*/
+	private final int height, width;
+	/**
+	* the most Pixels the input or the output of any stage has
+	*/
+	private long maxPixels;
+
+	/**
+	* a constructor that builds a Pipeline from command line arguments, fusing geometric operations as it goes
+	* @param height the height of the input Image
+	* @param width the width of the input Image
+	* @param args the arguments, each operation followed by its parameters as ImagingApp takes them
+	* @param from the index of the first operation within args
+	* @throws IllegalArgumentException if an operation is unknown, has too few parameters, or falls outside the Image
+	*/
+	public Pipeline(int height, int width, String[] args, int from){
+
+		this.height = height;
+		this.width = width;
+		this.maxPixels = (long) height * width;
+
+		int h = height, w = width;
+		int i = from;
+		while(i < args.length){
+			String op = args[i];
+			Stage last = stages.isEmpty() ? null : stages.get(stages.size() - 1);
+			if(last != null && last.name.equals("compress")){
+				throw new IllegalArgumentException("compress must be the last operation.");
+			}
+
+			switch(op){
+				case "crop":
+				require(args, i, 4);
+				int topY = Integer.parseInt(args[i+1]);
+				int topX = Integer.parseInt(args[i+2]);
+				int cropHeight = Integer.parseInt(args[i+3]);
+				int cropWidth = Integer.parseInt(args[i+4]);
+				if(topY < 0 || topX < 0 || cropHeight < 0 || cropWidth < 0 || topY + cropHeight > h || topX + cropWidth > w){
+					throw new IllegalArgumentException("Crop outside " + h + "x" + w + " image.");
+				}
+				transform(op + " " + topY + " " + topX + " " + cropHeight + " " + cropWidth, CoordinateMap.crop(topY, topX), cropHeight, cropWidth);
+				h = cropHeight;
+				w = cropWidth;
+				i += 5;
+				break;
+
+				case "flip":
+				require(args, i, 1);
+				transform(op + " " + args[i+1], CoordinateMap.flip(args[i+1].contains("vertical"), h, w), h, w);
+				i += 2;
+				break;
+
+				case "rotate":
+				require(args, i, 1);
+				boolean clockwise = args[i+1].contains("clockwise") && !args[i+1].contains("counter");
+				transform(op + " " + args[i+1], CoordinateMap.rotate(clockwise, h, w), w, h);
+				int swap = h;
+				h = w;
+				w = swap;
+				i += 2;
+				break;
+
+				case "scale":
+				require(args, i, 1);
+				Stage scale = new Stage(op);
+				scale.factor = Integer.parseInt(args[i+1]);
+				if(scale.factor == 0){
+					throw new IllegalArgumentException("Scale factor can't be 0.");
+				}
+				//an enlargement past the largest int would wrap around to a small or negative size
+				try{
+					scale.height = scale.factor < 0 ? h / Math.negateExact(scale.factor) : Math.multiplyExact(h, scale.factor);
+					scale.width = scale.factor < 0 ? w / Math.negateExact(scale.factor) : Math.multiplyExact(w, scale.factor);
+				}
+				catch(ArithmeticException e){
+					throw new IllegalArgumentException("Scale by " + scale.factor + " is too large for a " + h + "x" + w + " image.");
+				}
+				h = scale.height;
+				w = scale.width;
+				stages.add(scale);
+				i += 2;
+				break;
+
+				case "resize":
+				require(args, i, 3);
+				Stage resize = new Stage(op);
+				resize.height = Integer.parseInt(args[i+1]);
+				resize.width = Integer.parseInt(args[i+2]);
+				resize.kernel = Resampler.Kernel.valueOf(args[i+3].toUpperCase());
+				if(resize.height < 1 || resize.width < 1){
+					throw new IllegalArgumentException("Can't resize to " + resize.height + "x" + resize.width + ".");
+				}
+				h = resize.height;
+				w = resize.width;
+				stages.add(resize);
+				i += 4;
+				break;
+
+				case "compress":
+				require(args, i, 2);
+				Stage compress = new Stage(op);
+				compress.tileComp = args[i+1].equals("yes");
+				compress.pixelComp = args[i+2].equals("yes");
+				compress.height = h;
+				compress.width = w;
+				stages.add(compress);
+				i += 3;
+				break;
+
+				default:
+				throw new IllegalArgumentException("Unknown operation " + op + ".");
+			}
+			maxPixels = Math.max(maxPixels, (long) h * w);
+		}
+
+		if(stages.isEmpty()){
+			throw new IllegalArgumentException("Pipeline has no operations.");
+		}
+
+	}
+
+	/**
+	* a method that checks an operation has enough parameters
+	* @param args the arguments
+	* @param at the index of the operation
+	* @param count the number of parameters it takes
+	*/
+	private static void require(String[] args, int at, int count){
+
+		if(at + count >= args.length){
+			throw new IllegalArgumentException("Incorrect number of parameters for " + args[at] + ".");
+		}
+
+	}
+
+	/**
+	* a method that adds a geometric operation, fusing it into the previous stage when that is also geometric
+	* @param description the operation and its parameters
+	* @param map the map from the operation's output to its input
+	* @param height the height of the operation's output
+	* @param width the width of the operation's output
+	*/
+	private void transform(String description, CoordinateMap map, int height, int width){
+
+		Stage last = stages.isEmpty() ? null : stages.get(stages.size() - 1);
+		if(last == null || !last.name.equals("transform")){
+			last = new Stage("transform");
+			last.map = map;
+			stages.add(last);
+		}
+		else{
+			last.map = last.map.compose(map);
+		}
+		last.fused.add(description);
+		last.height = height;
+		last.width = width;
+
+	}
+
+	/**
+	* a getter that returns the most Pixels the input or the output of any stage has, so a caller can refuse a Pipeline before running it
+	* @return maxPixels the largest height times width
+	*/
+	public long getMaxPixels(){
+
+		return maxPixels;
+
+	}
+
+	/**
+	* a method that runs every stage on an Image
+	* @param input the Image, which must have the dimensions the Pipeline was built for
+	* @return the result, an Image or a CompressedImage if the last stage compresses
+	*/
+	public SampleSource run(Image input){
+
+		if(input.getHeight() != height || input.getWidth() != width){
+			throw new IllegalArgumentException("Pipeline was built for a " + height + "x" + width + " image.");
+		}
+
+		Image current = input;
+		for(Stage stage : stages){
+			switch(stage.name){
+				case "transform":
+				current = current.transform(stage.map, stage.height, stage.width);
+				break;
+
+				case "scale":
+				current = current.scale(stage.factor);
+				break;
+
+				case "resize":
+				current = current.resize(stage.height, stage.width, stage.kernel);
+				break;
+
+				default:
+				return current.compress(stage.tileComp, stage.pixelComp);
+			}
+		}
+		return current;
+
+	}
+
+	/**
+	* a method that describes the stages of the Pipeline, with fused operations in brackets
+	* @return a String such as [crop 0 0 8 8 + rotate clockwise] -> scale 2
+	*/
+	public String toString(){
+
+		StringBuilder out = new StringBuilder();
+		for(Stage stage : stages){
+			if(out.length() > 0){
+				out.append(" -> ");
+			}
+			if(stage.name.equals("transform")){
+				out.append("[").append(String.join(" + ", stage.fused)).append("]");
+			}
+			else if(stage.name.equals("scale")){
+				out.append("scale ").append(stage.factor);
+			}
+			else if(stage.name.equals("resize")){
+				out.append("resize ").append(stage.height).append(" ").append(stage.width).append(" ").append(stage.kernel.name().toLowerCase());
+			}
+			else{
+				out.append("compress ").append(stage.tileComp ? "yes" : "no").append(" ").append(stage.pixelComp ? "yes" : "no");
+			}
+		}
+		return out.toString();
+
+	}
+
+}
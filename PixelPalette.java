@@ -0,0 +1,120 @@
+/**
+* A class that hands out one shared Pixel per distinct value, so equal Pixels across a whole CompressedImage are aliases of each other
+* Pixels are found by their samples in an open-addressing table without creating a Pixel or a String to look one up
+* @author Aidan Grupac
+*/
+public class PixelPalette{
+
+	/**
+	* the samples of the Pixel in each slot packed into one long, 16 bits per sample
+	*/
+	private long[] keys;
+	/**
+	* the shared Pixel in each slot, null for an empty slot
+	*/
+	private Pixel[] pixels;
+	/**
+	* the number of distinct Pixels held
+	*/
+	private int size;
+
+	/**
+	* a constructor that creates an empty PixelPalette
+	*/
+	public PixelPalette(){
+
+		keys = new long[256];
+		pixels = new Pixel[256];
+
+	}
+
+	/**
+	* a method that returns the shared grayscale Pixel with the given value, creating it the first time
+	* @param gray the grayscale value
+	* @return the shared Pixel
+	*/
+	public Pixel intern(int gray){
+
+		int slot = find(gray);
+		if(pixels[slot] == null){
+			return insert(slot, gray, new Pixel(gray));
+		}
+		return pixels[slot];
+
+	}
+
+	/**
+	* a method that returns the shared color Pixel with the given values, creating it the first time
+	* @param red the red value
+	* @param green the green value
+	* @param blue the blue value
+	* @return the shared Pixel
+	*/
+	public Pixel intern(int red, int green, int blue){
+
+		long key = ((long) red << 32) | ((long) green << 16) | blue;
+		int slot = find(key);
+		if(pixels[slot] == null){
+			return insert(slot, key, new Pixel(red, green, blue));
+		}
+		return pixels[slot];
+
+	}
+
+	/**
+	* a getter that returns the number of distinct Pixels handed out
+	* @return size the number of distinct Pixels
+	*/
+	public int size(){
+
+		return size;
+
+	}
+
+	/**
+	* a method that returns the slot holding key, or the empty slot where it belongs
+	* @param key the packed samples
+	* @return the slot index
+	*/
+	private int find(long key){
+
+		int mask = keys.length - 1;
+		long mixed = key * 0x9E3779B97F4A7C15L;
+		int slot = (int) (mixed ^ (mixed >>> 32)) & mask;
+		while(pixels[slot] != null && keys[slot] != key){
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+
+	}
+
+	/**
+	* a method that stores a new Pixel in an empty slot, growing the table once it is half full
+	* @param slot the empty slot returned by find()
+	* @param key the packed samples
+	* @param pixel the new shared Pixel
+	* @return pixel
+	*/
+	private Pixel insert(int slot, long key, Pixel pixel){
+
+		keys[slot] = key;
+		pixels[slot] = pixel;
+		size++;
+		if(size * 2 > keys.length){
+			long[] oldKeys = keys;
+			Pixel[] oldPixels = pixels;
+			keys = new long[oldKeys.length * 2];
+			pixels = new Pixel[oldPixels.length * 2];
+			for(int i = 0; i < oldKeys.length; i++){
+				if(oldPixels[i] != null){
+					int to = find(oldKeys[i]);
+					keys[to] = oldKeys[i];
+					pixels[to] = oldPixels[i];
+				}
+			}
+		}
+		return pixel;
+
+	}
+
+}
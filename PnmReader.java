@@ -0,0 +1,414 @@
+import java.io.IOException;
+import java.io.EOFException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+* A class that decodes PGM/PPM files one row at a time, reading bytes straight from a channel instead of through a Scanner
+* ASCII (P2/P3) and binary (P5/P6) files are told apart by their magic number, and binary files read from disk are memory-mapped
+* @author Aidan Grupac
+*/
+public class PnmReader implements AutoCloseable{
+
+	/**
+	* the size of the byte buffer refilled from the channel
+	*/
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	* the channel the file is read from
+	*/
+	private ReadableByteChannel channel;
+	/**
+	* the bytes read from the channel but not yet decoded, wrapping buffer
+	*/
+	private byte[] bytes;
+	/**
+	* a ByteBuffer view of bytes, used to refill it from the channel
+	*/
+	private ByteBuffer buffer;
+	/**
+	* the index of the next byte to decode and the number of valid bytes in bytes
+	*/
+	private int position, limit;
+	/**
+	* the memory-mapped raster of a binary file read from a FileChannel, null otherwise
+	*/
+	private MappedByteBuffer raster;
+	/**
+	* the raw bytes of one row of a binary file
+	*/
+	private byte[] rowBytes;
+	/**
+	* the total number of bytes read from the channel
+	*/
+	private long bytesRead;
+	/**
+	* the magic number of the file, such as "P2"
+	*/
+	private String magic;
+	/**
+	* integers representing the width, height and maximum sample value of the file
+	*/
+	private int width, height, maxval;
+	/**
+	* boolean representing whether the file is grayscale or not
+	*/
+	private boolean grayscale;
+	/**
+	* boolean representing whether the raster is stored as bytes (P5/P6) rather than decimal text (P2/P3)
+	*/
+	private boolean binary;
+	/**
+	* the number of rows decoded so far
+	*/
+	private int rowsRead;
+
+	/**
+	* a constructor that opens a file and reads its header
+	* @param filename the name of the source file
+	* @throws IOException if the file can't be opened or its header is malformed
+	*/
+	public PnmReader(String filename) throws IOException{
+
+		this(FileChannel.open(Paths.get(filename), StandardOpenOption.READ));
+
+	}
+
+	/**
+	* a constructor that reads a header from a channel, leaving the channel positioned for readRow()
+	* @param channel the channel to read from, closed by close()
+	* @throws IOException if the header is malformed
+	*/
+	public PnmReader(ReadableByteChannel channel) throws IOException{
+
+		this.channel = channel;
+		this.bytes = new byte[BUFFER_SIZE];
+		this.buffer = ByteBuffer.wrap(bytes);
+
+		try{
+			readHeader();
+			if(binary && channel instanceof FileChannel){
+				mapRaster((FileChannel) channel);
+			}
+		}
+		catch(IOException e){
+			channel.close();
+			throw e;
+		}
+
+	}
+
+	/**
+	* a method that reads the magic number, dimensions and maximum sample value
+	* @throws IOException if the header is malformed
+	*/
+	private void readHeader() throws IOException{
+
+		if(read() != 'P'){
+			throw new IOException("Not a PNM file.");
+		}
+		int type = read();
+		if(type == '2' || type == '5'){
+			grayscale = true;
+		}
+		else if(type == '3' || type == '6'){
+			grayscale = false;
+		}
+		else{
+			throw new IOException("Unsupported PNM type P" + (char) type + ".");
+		}
+		magic = "P" + (char) type;
+		binary = type == '5' || type == '6';
+
+		width = nextInt();
+		height = nextInt();
+		maxval = nextInt();
+		if(width < 0 || height < 0 || maxval <= 0 || maxval > 65535){
+			throw new IOException("Invalid PNM header.");
+		}
+		//a binary raster starts after exactly one whitespace byte
+		if(binary){
+			int c = read();
+			if(c != ' ' && c != '\n' && c != '\r' && c != '\t' && c != 0x0B && c != '\f'){
+				throw new IOException("Invalid PNM header.");
+			}
+		}
+
+	}
+
+	/**
+	* a method that maps the rest of a binary file into memory so rows are copied from the page cache without read calls
+	* files whose raster doesn't fit in one mapping keep using the buffer
+	* @param file the channel the header was read from
+	* @throws IOException if the file can't be mapped
+	*/
+	private void mapRaster(FileChannel file) throws IOException{
+
+		//the raster starts where decoding stopped, not where the channel stopped reading
+		long start = bytesRead - (limit - position);
+		long size = file.size() - start;
+		if(size <= Integer.MAX_VALUE){
+			raster = file.map(FileChannel.MapMode.READ_ONLY, start, size);
+			position = limit = 0;
+			//rows copied out of the mapping count as read instead of the buffered bytes past the header
+			bytesRead = start;
+		}
+
+	}
+
+	/**
+	* a method that checks the magic number of a file without reading the rest of it
+	* @param filename the name of the file
+	* @return true if the file is a binary P5/P6 file
+	* @throws IOException if the file can't be read or isn't a PNM file
+	*/
+	public static boolean isBinary(String filename) throws IOException{
+
+		PnmReader reader = new PnmReader(filename);
+		boolean binary = reader.isBinary();
+		reader.close();
+		return binary;
+
+	}
+
+	/**
+	* a getter that returns the magic number of the file
+	* @return magic the magic number, such as "P2"
+	*/
+	public String getMagic(){
+
+		return magic;
+
+	}
+
+	/**
+	* a getter that returns the width of the file
+	* @return width the width in Pixels
+	*/
+	public int getWidth(){
+
+		return width;
+
+	}
+
+	/**
+	* a getter that returns the height of the file
+	* @return height the height in Pixels
+	*/
+	public int getHeight(){
+
+		return height;
+
+	}
+
+	/**
+	* a getter that returns the maximum sample value of the file
+	* @return maxval the maximum sample value
+	*/
+	public int getMaxval(){
+
+		return maxval;
+
+	}
+
+	/**
+	* a getter that returns whether the file is grayscale
+	* @return grayscale the color scheme of the file
+	*/
+	public boolean isGrayscale(){
+
+		return grayscale;
+
+	}
+
+	/**
+	* a getter that returns whether the raster is stored as bytes
+	* @return binary true for P5/P6, false for P2/P3
+	*/
+	public boolean isBinary(){
+
+		return binary;
+
+	}
+
+	/**
+	* a getter that returns the number of bytes read from the channel so far
+	* @return bytesRead the number of bytes read
+	*/
+	public long getBytesRead(){
+
+		return bytesRead;
+
+	}
+
+	/**
+	* a method that decodes the next row of the file into samples, one per grayscale Pixel or three per color Pixel
+	* @param row the array receiving the samples, at least width * (1 or 3) long
+	* @throws IOException if the file ends early or holds something other than a number
+	*/
+	public void readRow(int[] row) throws IOException{
+
+		if(rowsRead >= height){
+			throw new EOFException("No rows left.");
+		}
+
+		int count = grayscale ? width : width * 3;
+		if(binary){
+			readBinary(row, count);
+		}
+		else{
+			for(int i = 0; i < count; i++){
+				row[i] = nextInt();
+			}
+		}
+		rowsRead++;
+
+	}
+
+	/**
+	* a method that decodes count samples of a binary raster, one byte each, or two bytes most significant first when maxval is above 255
+	* @param row the array receiving the samples
+	* @param count the number of samples
+	* @throws IOException if the file ends early
+	*/
+	private void readBinary(int[] row, int count) throws IOException{
+
+		boolean wide = maxval > 255;
+		int size = wide ? count * 2 : count;
+		if(rowBytes == null || rowBytes.length < size){
+			rowBytes = new byte[size];
+		}
+
+		//copy the raw row out of the mapping, or out of the buffer refilling it as needed
+		if(raster != null){
+			if(raster.remaining() < size){
+				throw new EOFException("Unexpected end of file.");
+			}
+			raster.get(rowBytes, 0, size);
+			bytesRead += size;
+		}
+		else{
+			int copied = 0;
+			while(copied < size){
+				if(position == limit && !fill()){
+					throw new EOFException("Unexpected end of file.");
+				}
+				int n = Math.min(size - copied, limit - position);
+				System.arraycopy(bytes, position, rowBytes, copied, n);
+				position += n;
+				copied += n;
+			}
+		}
+
+		if(wide){
+			for(int i = 0; i < count; i++){
+				row[i] = ((rowBytes[2*i] & 0xFF) << 8) | (rowBytes[2*i + 1] & 0xFF);
+			}
+		}
+		else{
+			for(int i = 0; i < count; i++){
+				row[i] = rowBytes[i] & 0xFF;
+			}
+		}
+
+	}
+
+	/**
+	* a method that decodes the next unsigned decimal number, skipping whitespace and # comments
+	* @return the number
+	* @throws IOException if the file ends early or holds something other than a number
+	*/
+	private int nextInt() throws IOException{
+
+		int c = read();
+		//skip whitespace and comments, which run to the end of the line
+		while(true){
+			if(c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == 0x0B || c == '\f'){
+				c = read();
+			}
+			else if(c == '#'){
+				while(c != '\n' && c != '\r' && c != -1){
+					c = read();
+				}
+			}
+			else{
+				break;
+			}
+		}
+
+		if(c < '0' || c > '9'){
+			if(c == -1){
+				throw new EOFException("Unexpected end of file.");
+			}
+			throw new IOException("Unexpected character '" + (char) c + "'.");
+		}
+
+		int value = 0;
+		while(c >= '0' && c <= '9'){
+			value = value * 10 + (c - '0');
+			if(value > 65535){
+				throw new IOException("Sample out of range.");
+			}
+			c = read();
+		}
+		//the number must be followed by whitespace, a comment or the end of file
+		if(c != -1){
+			position--;
+		}
+		return value;
+
+	}
+
+	/**
+	* a method that returns the next byte of the file, refilling the buffer when it runs out
+	* @return the byte as 0-255, or -1 at the end of file
+	* @throws IOException if the channel can't be read
+	*/
+	private int read() throws IOException{
+
+		if(position == limit && !fill()){
+			return -1;
+		}
+		return bytes[position++] & 0xFF;
+
+	}
+
+	/**
+	* a method that refills the buffer from the channel
+	* @return false if the channel has no more bytes
+	* @throws IOException if the channel can't be read
+	*/
+	private boolean fill() throws IOException{
+
+		buffer.clear();
+		int n = 0;
+		while(n == 0){
+			n = channel.read(buffer);
+		}
+		if(n < 0){
+			position = limit = 0;
+			return false;
+		}
+		bytesRead += n;
+		position = 0;
+		limit = n;
+		return true;
+
+	}
+
+	/**
+	* a method that closes the underlying channel
+	* @throws IOException if the channel can't be closed
+	*/
+	public void close() throws IOException{
+
+		channel.close();
+
+	}
+
+}
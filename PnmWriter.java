@@ -0,0 +1,305 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+* A class that encodes PGM/PPM files one row at a time through a channel, writing digits and bytes straight into a reusable buffer
+* ASCII files match what PrintWriter produced: grayscale rows end in a line break, color Pixels are one per line, every sample is followed by a space
+* @author Aidan Grupac
+*/
+public class PnmWriter implements AutoCloseable{
+
+	/**
+	* the size of the byte buffer flushed to the channel
+	*/
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	* the channel the file is written to
+	*/
+	private WritableByteChannel channel;
+	/**
+	* the encoded bytes not yet written to the channel, wrapped by buffer
+	*/
+	private byte[] bytes;
+	/**
+	* a ByteBuffer view of bytes, used to write it to the channel
+	*/
+	private ByteBuffer buffer;
+	/**
+	* the number of encoded bytes waiting in bytes
+	*/
+	private int position;
+	/**
+	* the total number of bytes written to the channel
+	*/
+	private long bytesWritten;
+	/**
+	* integers representing the width, height and maximum sample value of the file
+	*/
+	private int width, height, maxval;
+	/**
+	* boolean representing whether the file is grayscale or not
+	*/
+	private boolean grayscale;
+	/**
+	* boolean representing whether the raster is written as bytes (P5/P6) rather than decimal text (P2/P3)
+	*/
+	private boolean binary;
+	/**
+	* the line separator written after ASCII rows and Pixels
+	*/
+	private byte[] newline;
+	/**
+	* the number of rows encoded so far
+	*/
+	private int rowsWritten;
+
+	/**
+	* a constructor that creates or truncates a file and writes its header
+	* @param filename the name of the output file
+	* @param grayscale whether to write a PGM rather than a PPM
+	* @param binary whether to write P5/P6 rather than P2/P3
+	* @param width the width of the image
+	* @param height the height of the image
+	* @param maxval the maximum sample value, above 255 samples take two bytes
+	* @throws IOException if the file can't be created
+	*/
+	public PnmWriter(String filename, boolean grayscale, boolean binary, int width, int height, int maxval) throws IOException{
+
+		this(FileChannel.open(Paths.get(filename), StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING), grayscale, binary, width, height, maxval);
+
+	}
+
+	/**
+	* a constructor that writes a header to a channel
+	* @param channel the channel to write to, closed by close()
+	* @param grayscale whether to write a PGM rather than a PPM
+	* @param binary whether to write P5/P6 rather than P2/P3
+	* @param width the width of the image
+	* @param height the height of the image
+	* @param maxval the maximum sample value, above 255 samples take two bytes
+	* @throws IOException if the header can't be written
+	*/
+	public PnmWriter(WritableByteChannel channel, boolean grayscale, boolean binary, int width, int height, int maxval) throws IOException{
+
+		this.channel = channel;
+		this.grayscale = grayscale;
+		this.binary = binary;
+		this.width = width;
+		this.height = height;
+		this.maxval = maxval;
+		this.bytes = new byte[BUFFER_SIZE];
+		this.buffer = ByteBuffer.wrap(bytes);
+
+		this.newline = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+		String magic;
+		if(binary){
+			magic = grayscale ? "P5" : "P6";
+		}
+		else{
+			magic = grayscale ? "P2" : "P3";
+		}
+		//a binary raster starts after exactly one whitespace byte, an ASCII one after a line break
+		String header = magic + "\n" + width + " " + height + "\n" + maxval + (binary ? "\n" : System.lineSeparator());
+		byte[] encoded = header.getBytes(StandardCharsets.US_ASCII);
+		System.arraycopy(encoded, 0, bytes, 0, encoded.length);
+		position = encoded.length;
+
+	}
+
+	/**
+	* a method that writes every row of an image to a file
+	* @param img the image to write
+	* @param filename the name of the output file
+	* @param binary whether to write P5/P6 rather than P2/P3
+	* @throws IOException if the file can't be written
+	*/
+	public static void write(SampleSource img, String filename, boolean binary) throws IOException{
+
+		write(img, FileChannel.open(Paths.get(filename), StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING), binary);
+
+	}
+
+	/**
+	* a method that writes every row of an image to a channel, such as the body of a response, and closes it
+	* @param img the image to write
+	* @param channel the channel to write to
+	* @param binary whether to write P5/P6 rather than P2/P3
+	* @throws IOException if the channel can't be written
+	*/
+	public static void write(SampleSource img, WritableByteChannel channel, boolean binary) throws IOException{
+
+		long start = Metrics.start();
+		PnmWriter writer = new PnmWriter(channel, img.isGrayscale(), binary, img.getWidth(), img.getHeight(), img.getMaxval());
+		try{
+			int[] row = new int[img.getWidth() * (img.isGrayscale() ? 1 : 3)];
+			for(int i = 0; i < img.getHeight(); i++){
+				img.getSamples(i, 0, img.getWidth(), row);
+				writer.writeRow(row);
+			}
+		}
+		finally{
+			writer.close();
+		}
+		Metrics.add("write.bytes", writer.getBytesWritten());
+		Metrics.add("write.pixels", (long) img.getHeight() * img.getWidth());
+		Metrics.stop("write", start);
+
+	}
+
+	/**
+	* a getter that returns the number of bytes written to the channel so far
+	* @return bytesWritten the number of bytes written
+	*/
+	public long getBytesWritten(){
+
+		return bytesWritten;
+
+	}
+
+	/**
+	* a method that encodes the next row of the file from samples
+	* @param row the samples, one per grayscale Pixel or three per color Pixel
+	* @throws IOException if the row can't be written
+	*/
+	public void writeRow(int[] row) throws IOException{
+
+		if(rowsWritten >= height){
+			throw new IOException("All rows already written.");
+		}
+
+		if(binary){
+			writeBinary(row);
+		}
+		else{
+			writeAscii(row);
+		}
+		rowsWritten++;
+
+	}
+
+	/**
+	* a method that encodes a row as decimal text, each sample followed by a space
+	* grayscale rows end with a line break, and in color each Pixel ends with one
+	* @param row the samples of the row
+	* @throws IOException if the buffer can't be flushed
+	*/
+	private void writeAscii(int[] row) throws IOException{
+
+		int channels = grayscale ? 1 : 3;
+		int sample = 0;
+		for(int i = 0; i < width; i++){
+			//room for three samples of up to 10 digits, their spaces and a line break
+			if(position + 40 > bytes.length){
+				flush();
+			}
+			for(int k = 0; k < channels; k++){
+				writeDigits(row[sample++]);
+				bytes[position++] = ' ';
+			}
+			if(!grayscale){
+				writeNewline();
+			}
+		}
+		if(grayscale){
+			if(position + newline.length > bytes.length){
+				flush();
+			}
+			writeNewline();
+		}
+
+	}
+
+	/**
+	* a method that writes the decimal digits of a non-negative sample into the buffer without creating a String
+	* @param value the sample
+	*/
+	private void writeDigits(int value){
+
+		if(value < 10){
+			bytes[position++] = (byte) ('0' + value);
+			return;
+		}
+		//count the digits, then fill them in from the right
+		int digits = 1;
+		for(int rest = value / 10; rest > 0; rest /= 10){
+			digits++;
+		}
+		int end = position + digits;
+		for(int i = end - 1; i >= position; i--){
+			bytes[i] = (byte) ('0' + value % 10);
+			value /= 10;
+		}
+		position = end;
+
+	}
+
+	/**
+	* a method that writes the line separator into the buffer
+	*/
+	private void writeNewline(){
+
+		for(int i = 0; i < newline.length; i++){
+			bytes[position++] = newline[i];
+		}
+
+	}
+
+	/**
+	* a method that encodes a row as bytes, one per sample, or two most significant first when maxval is above 255
+	* @param row the samples of the row
+	* @throws IOException if the buffer can't be flushed
+	*/
+	private void writeBinary(int[] row) throws IOException{
+
+		int count = grayscale ? width : width * 3;
+		boolean wide = maxval > 255;
+		for(int i = 0; i < count; i++){
+			if(position + 2 > bytes.length){
+				flush();
+			}
+			if(wide){
+				bytes[position++] = (byte) (row[i] >> 8);
+			}
+			bytes[position++] = (byte) row[i];
+		}
+
+	}
+
+	/**
+	* a method that writes the encoded bytes waiting in the buffer to the channel
+	* @throws IOException if the channel can't be written
+	*/
+	private void flush() throws IOException{
+
+		buffer.clear();
+		buffer.limit(position);
+		while(buffer.hasRemaining()){
+			bytesWritten += channel.write(buffer);
+		}
+		position = 0;
+
+	}
+
+	/**
+	* a method that flushes the buffer and closes the underlying channel
+	* @throws IOException if the channel can't be written or closed
+	*/
+	public void close() throws IOException{
+
+		try{
+			flush();
+		}
+		finally{
+			channel.close();
+		}
+
+	}
+
+}
@@ -0,0 +1,233 @@
+import java.util.Arrays;
+
+/**
+* A class that resizes Images to any dimensions by filtering, as two separable passes over rows of samples
+* the horizontal pass resizes a source row to the new width, and the vertical pass blends those rows into each output row
+* output rows are made in bands on several threads, and each band keeps only a rolling window of as many resized rows as the filter reaches,
+* resizing a source row when an output row first needs it, so memory grows with the width of the Image rather than its area
+* the weights of every output column and row are worked out once, before either pass
+* @author Aidan Grupac
+*/
+public class Resampler{
+
+	/**
+	* the filters an Image can be resized with
+	*/
+	public enum Kernel{
+
+		/**
+		* the average of the source Pixels an output Pixel covers, each weighted by how much of it is covered, the sharpest choice for shrinking
+		*/
+		BOX(0.5),
+		/**
+		* a straight line between the two nearest source Pixels in each direction, widened when shrinking
+		*/
+		BILINEAR(1),
+		/**
+		* a Catmull-Rom cubic through the four nearest source Pixels in each direction, widened when shrinking
+		*/
+		BICUBIC(2);
+
+		/**
+		* how far from its center, in source Pixels, the filter reaches before it is widened
+		*/
+		private final double support;
+
+		/**
+		* a constructor that creates a Kernel
+		* @param support the reach of the filter
+		*/
+		Kernel(double support){
+
+			this.support = support;
+
+		}
+
+		/**
+		* a method that returns the weight of a sample at distance x from the center
+		* @param x the distance, in filter units
+		* @return the weight
+		*/
+		private double weight(double x){
+
+			x = Math.abs(x);
+			switch(this){
+				case BOX:
+				return x < 0.5 ? 1 : 0;
+
+				case BILINEAR:
+				return x < 1 ? 1 - x : 0;
+
+				default:
+				//Catmull-Rom, a = -0.5
+				if(x < 1){
+					return (1.5 * x - 2.5) * x * x + 1;
+				}
+				if(x < 2){
+					return ((-0.5 * x + 2.5) * x - 4) * x + 2;
+				}
+				return 0;
+			}
+
+		}
+
+	}
+
+	/**
+	* a class representing the weights of one direction of a resize: for each output position, the first source position it reads and one weight per source position read
+	*/
+	private static class Weights{
+
+		/**
+		* the first source position read by each output position
+		*/
+		private final int[] start;
+		/**
+		* the weights of each output position, summing to 1
+		*/
+		private final float[][] weights;
+
+		/**
+		* a constructor that works out the weights of resizing a line of source Pixels to a line of target Pixels
+		* @param source the number of source Pixels
+		* @param target the number of target Pixels
+		* @param kernel the filter
+		*/
+		private Weights(int source, int target, Kernel kernel){
+
+			start = new int[target];
+			weights = new float[target][];
+			double ratio = (double) source / target;
+			//when shrinking, stretch the filter over every source Pixel an output Pixel covers
+			double scale = Math.max(ratio, 1);
+			double support = kernel.support * scale;
+			for(int i = 0; i < target; i++){
+				double center = (i + 0.5) * ratio;
+				int from, to;
+				float[] w;
+				double total = 0;
+				if(kernel == Kernel.BOX){
+					//weigh each source Pixel by the length of it inside the output Pixel's footprint, from i * ratio to (i + 1) * ratio
+					double low = i * ratio, high = (i + 1) * ratio;
+					from = Math.min(source - 1, (int) Math.floor(low));
+					to = Math.max(from + 1, Math.min(source, (int) Math.ceil(high)));
+					w = new float[to - from];
+					for(int j = from; j < to; j++){
+						double weight = Math.max(0, Math.min(high, j + 1) - Math.max(low, j));
+						w[j - from] = (float) weight;
+						total += weight;
+					}
+				}
+				else{
+					from = Math.max(0, (int) Math.floor(center - support));
+					to = Math.min(source, (int) Math.ceil(center + support));
+					w = new float[Math.max(1, to - from)];
+					for(int j = from; j < to; j++){
+						double weight = kernel.weight((j + 0.5 - center) / scale);
+						w[j - from] = (float) weight;
+						total += weight;
+					}
+				}
+				if(total == 0){
+					//no source Pixel in reach, so take the nearest
+					from = Math.min(source - 1, (int) center);
+					w = new float[]{1};
+				}
+				else{
+					for(int j = 0; j < w.length; j++){
+						w[j] /= total;
+					}
+				}
+				start[i] = from;
+				weights[i] = w;
+			}
+
+		}
+
+	}
+
+	/**
+	* a private constructor, Resampler only holds static helpers
+	*/
+	private Resampler(){
+
+	}
+
+	/**
+	* a method that fills target with source resized to target's dimensions
+	* @param source the Image to resize
+	* @param target an Image of the new dimensions with the same color scheme and maximum sample value
+	* @param kernel the filter
+	*/
+	public static void resample(Image source, Image target, Kernel kernel){
+
+		int channels = source.getChannels();
+		int sourceWidth = source.getWidth();
+		int targetWidth = target.getWidth();
+		int maxval = source.getMaxval();
+		Weights across = new Weights(sourceWidth, targetWidth, kernel);
+		Weights down = new Weights(source.getHeight(), target.getHeight(), kernel);
+
+		ParallelEngine.forEachBand(target.getHeight(), (from, to) -> {
+			//the window holds source row r in slot r % window; the rows an output row reads are consecutive, so they never share a slot,
+			//and since the first row read only moves down, a row is overwritten only once no later output row reads it
+			int window = 1;
+			for(int y = from; y < to; y++){
+				window = Math.max(window, down.weights[y].length);
+			}
+			float[][] rows = new float[window][targetWidth * channels];
+			int[] held = new int[window];
+			Arrays.fill(held, -1);
+			int[] in = new int[sourceWidth * channels];
+			int[] out = new int[targetWidth * channels];
+			float[] sum = new float[targetWidth * channels];
+			for(int y = from; y < to; y++){
+				float[] w = down.weights[y];
+				Arrays.fill(sum, 0);
+				for(int j = 0; j < w.length; j++){
+					int r = down.start[y] + j;
+					float[] row = rows[r % window];
+					if(held[r % window] != r){
+						source.getSamples(r, 0, sourceWidth, in);
+						resizeRow(in, row, across, channels);
+						held[r % window] = r;
+					}
+					for(int i = 0; i < sum.length; i++){
+						sum[i] += w[j] * row[i];
+					}
+				}
+				//bicubic can overshoot, so clamp to the range of a sample
+				for(int i = 0; i < out.length; i++){
+					int value = Math.round(sum[i]);
+					out[i] = value < 0 ? 0 : (value > maxval ? maxval : value);
+				}
+				target.setSamples(y, 0, targetWidth, out);
+			}
+		});
+
+	}
+
+	/**
+	* a method that runs the horizontal pass on one row
+	* @param in the samples of the source row
+	* @param out the array receiving the samples of the row at the new width
+	* @param across the weights of each output column
+	* @param channels the number of samples per Pixel
+	*/
+	private static void resizeRow(int[] in, float[] out, Weights across, int channels){
+
+		for(int x = 0; x < across.start.length; x++){
+			float[] w = across.weights[x];
+			int base = across.start[x] * channels;
+			for(int k = 0; k < channels; k++){
+				float sum = 0;
+				for(int j = 0; j < w.length; j++){
+					sum += w[j] * in[base + j * channels + k];
+				}
+				out[x * channels + k] = sum;
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,314 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+* A class that remembers encoded results by the source they were made from and the operations run on it, so a repeated request skips decoding, the operations and encoding
+* a key is the SHA-256 of the encoded source followed by the operations and their parameters, so two sources share a key only if their bytes are equal
+* results are kept in memory up to a number of bytes, and the least recently used are evicted first
+* if a spill directory is given, evicted results are written there instead of dropped, up to a second number of bytes, and read back on a later hit
+* every method may be called from several threads
+* @author Aidan Grupac
+*/
+public class ResultCache{
+
+	/**
+	* the results in memory, least recently used first
+	*/
+	private final LinkedHashMap<String, byte[]> memory = new LinkedHashMap<String, byte[]>(16, 0.75f, true);
+	/**
+	* the sizes of the results in the spill directory, least recently used first
+	*/
+	private final LinkedHashMap<String, Long> spilled = new LinkedHashMap<String, Long>(16, 0.75f, true);
+	/**
+	* the most bytes of results kept in memory and in the spill directory
+	*/
+	private final long maxBytes, maxSpillBytes;
+	/**
+	* the directory evicted results are written to, or null to drop them
+	*/
+	private final Path spillDir;
+	/**
+	* the bytes of results in memory and in the spill directory
+	*/
+	private long bytes, spillBytes;
+	/**
+	* counters of lookups found in memory, found in the spill directory, and not found, and of results evicted from memory
+	*/
+	private long hits, spillHits, misses, evictions;
+
+	/**
+	* a constructor that creates a ResultCache
+	* @param maxBytes the most bytes of results kept in memory
+	* @param spillDir the directory evicted results are written to, created if needed, or null to drop them
+	* @param maxSpillBytes the most bytes of results kept in the spill directory
+	* @throws IOException if the spill directory can't be created
+	*/
+	public ResultCache(long maxBytes, String spillDir, long maxSpillBytes) throws IOException{
+
+		this.maxBytes = maxBytes;
+		this.maxSpillBytes = maxSpillBytes;
+		this.spillDir = spillDir == null ? null : Files.createDirectories(Paths.get(spillDir));
+
+	}
+
+	/**
+	* a method that creates a ResultCache configured by system properties: imaging.cache.maxBytes (default 256 MB, 0 turns the cache off),
+	* imaging.cache.spillDir (default none) and imaging.cache.spillBytes (default 1 GB)
+	* @return a new ResultCache, or null if the cache is turned off
+	* @throws IOException if the spill directory can't be created
+	*/
+	public static ResultCache fromProperties() throws IOException{
+
+		long maxBytes = Long.getLong("imaging.cache.maxBytes", 256L << 20);
+		if(maxBytes <= 0){
+			return null;
+		}
+		return new ResultCache(maxBytes, System.getProperty("imaging.cache.spillDir"), Long.getLong("imaging.cache.spillBytes", 1L << 30));
+
+	}
+
+	/**
+	* a method that makes the key of running operations on a source
+	* @param source the encoded source, such as the bytes of a PGM/PPM file
+	* @param operations the operations and their parameters, and anything else the result depends on such as its format
+	* @return the key
+	*/
+	public static String key(byte[] source, String operations){
+
+		return hex(sha256(source)) + " " + operations;
+
+	}
+
+	/**
+	* a method that looks up a result, from memory or else from the spill directory
+	* @param key the key, see key()
+	* @return the result, which the caller must not change, or null if there is none
+	*/
+	public byte[] get(String key){
+
+		Path file;
+		synchronized(this){
+			byte[] result = memory.get(key);
+			if(result != null){
+				hits++;
+				return result;
+			}
+			if(spillDir == null || spilled.get(key) == null){
+				misses++;
+				return null;
+			}
+			file = spillFile(key);
+		}
+
+		//read outside the lock so other lookups carry on meanwhile
+		byte[] result;
+		try{
+			result = Files.readAllBytes(file);
+		}
+		catch(IOException e){
+			synchronized(this){
+				forget(key);
+				misses++;
+			}
+			return null;
+		}
+		synchronized(this){
+			spillHits++;
+		}
+		put(key, result);
+		return result;
+
+	}
+
+	/**
+	* a method that remembers a result, evicting the least recently used results while memory holds more than maxBytes
+	* a result larger than maxBytes is not kept
+	* @param key the key, see key()
+	* @param result the result, which the caller must not change afterwards
+	*/
+	public void put(String key, byte[] result){
+
+		if(result.length > maxBytes){
+			return;
+		}
+		List<Map.Entry<String, byte[]>> evicted = new ArrayList<Map.Entry<String, byte[]>>();
+		synchronized(this){
+			byte[] old = memory.put(key, result);
+			bytes += result.length - (old == null ? 0 : old.length);
+			Iterator<Map.Entry<String, byte[]>> eldest = memory.entrySet().iterator();
+			while(bytes > maxBytes){
+				Map.Entry<String, byte[]> entry = eldest.next();
+				eldest.remove();
+				bytes -= entry.getValue().length;
+				evictions++;
+				if(spillDir != null && !spilled.containsKey(entry.getKey())){
+					evicted.add(entry);
+				}
+			}
+		}
+
+		//write outside the lock, and only count a file once it is complete
+		for(Map.Entry<String, byte[]> entry : evicted){
+			spill(entry.getKey(), entry.getValue());
+		}
+
+	}
+
+	/**
+	* a method that writes an evicted result to the spill directory, deleting the least recently used files while they hold more than maxSpillBytes
+	* @param key the key of the result
+	* @param result the result
+	*/
+	private void spill(String key, byte[] result){
+
+		if(result.length > maxSpillBytes){
+			return;
+		}
+		try{
+			Path file = spillFile(key);
+			Path temp = Files.createTempFile(spillDir, "spill", ".tmp");
+			Files.write(temp, result);
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch(IOException e){
+			//a full or unwritable disk only costs the chance of a later hit
+			return;
+		}
+		synchronized(this){
+			Long old = spilled.put(key, (long) result.length);
+			spillBytes += result.length - (old == null ? 0 : old);
+			Iterator<Map.Entry<String, Long>> eldest = spilled.entrySet().iterator();
+			while(spillBytes > maxSpillBytes){
+				Map.Entry<String, Long> oldest = eldest.next();
+				eldest.remove();
+				spillBytes -= oldest.getValue();
+				try{
+					Files.deleteIfExists(spillFile(oldest.getKey()));
+				}
+				catch(IOException e){
+					//left behind, it is overwritten if its key is spilled again
+				}
+			}
+		}
+
+	}
+
+	/**
+	* a method that drops a result from the spill directory whose file has gone missing
+	* @param key the key of the result
+	*/
+	private void forget(String key){
+
+		Long size = spilled.remove(key);
+		if(size != null){
+			spillBytes -= size;
+		}
+
+	}
+
+	/**
+	* a method that names the file a result is spilled to, after the hash of its key since keys hold spaces and any operation text
+	* @param key the key of the result
+	* @return the file
+	*/
+	private Path spillFile(String key){
+
+		return spillDir.resolve(hex(sha256(key.getBytes(StandardCharsets.UTF_8))) + ".pnm");
+
+	}
+
+	/**
+	* a getter that returns the number of lookups found in memory
+	* @return hits the number of hits
+	*/
+	public synchronized long getHits(){
+
+		return hits;
+
+	}
+
+	/**
+	* a getter that returns the number of lookups found in the spill directory
+	* @return spillHits the number of hits on disk
+	*/
+	public synchronized long getSpillHits(){
+
+		return spillHits;
+
+	}
+
+	/**
+	* a getter that returns the number of lookups not found
+	* @return misses the number of misses
+	*/
+	public synchronized long getMisses(){
+
+		return misses;
+
+	}
+
+	/**
+	* a getter that returns the number of results evicted from memory
+	* @return evictions the number of evictions
+	*/
+	public synchronized long getEvictions(){
+
+		return evictions;
+
+	}
+
+	/**
+	* a method that describes the counters and sizes of the cache in one line
+	* @return a String such as 12 hits, 0 spill hits, 3 misses, 0 evictions, 2 results (40960 bytes), 0 spilled (0 bytes)
+	*/
+	public synchronized String toString(){
+
+		return hits + " hits, " + spillHits + " spill hits, " + misses + " misses, " + evictions + " evictions, "
+			+ memory.size() + " results (" + bytes + " bytes), " + spilled.size() + " spilled (" + spillBytes + " bytes)";
+
+	}
+
+	/**
+	* a method that hashes bytes with SHA-256
+	* @param data the bytes
+	* @return the 32 byte digest
+	*/
+	private static byte[] sha256(byte[] data){
+
+		try{
+			return MessageDigest.getInstance("SHA-256").digest(data);
+		}
+		catch(NoSuchAlgorithmException e){
+			//every Java platform is required to provide SHA-256
+			throw new IllegalStateException(e);
+		}
+
+	}
+
+	/**
+	* a method that writes bytes as lowercase hexadecimal
+	* @param data the bytes
+	* @return the hexadecimal String
+	*/
+	private static String hex(byte[] data){
+
+		StringBuilder out = new StringBuilder(data.length * 2);
+		for(byte b : data){
+			out.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return out.toString();
+
+	}
+
+}
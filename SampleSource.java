@@ -0,0 +1,41 @@
+/**
+* An interface for images whose Pixels can be read one row of samples at a time, such as Image and CompressedImage
+* @author Aidan Grupac
+*/
+public interface SampleSource{
+
+	/**
+	* a getter that returns the height of the image
+	* @return the height in Pixels
+	*/
+	int getHeight();
+
+	/**
+	* a getter that returns the width of the image
+	* @return the width in Pixels
+	*/
+	int getWidth();
+
+	/**
+	* a getter that returns whether the image is grayscale
+	* @return true if each Pixel has one sample, false if it has three
+	*/
+	boolean isGrayscale();
+
+	/**
+	* a getter that returns the largest value a sample of the image may hold
+	* @return the maximum sample value, 255 unless the image was read from a file with a different one
+	*/
+	int getMaxval();
+
+	/**
+	* a method that copies the samples of a run of Pixels from row y into an array, one per grayscale Pixel or three per color Pixel
+	* @param y the row location within the image
+	* @param x the starting column location within the image
+	* @param length the number of Pixels to copy
+	* @param samples the array receiving the samples, or null to allocate one
+	* @return samples the array holding the samples
+	*/
+	int[] getSamples(int y, int x, int length, int[] samples);
+
+}
@@ -0,0 +1,343 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+* A class that applies operations to a PGM/PPM file while it is read, writing each band of rows as soon as it is done
+* the file is read in bands of 4 rows and only those rows are held in memory, so memory grows with the width of the image rather than its area
+* only operations that need no rows but the ones being written can stream: crop, flip horizontal, scale, compress and format
+* flip vertical and rotate need the last row before the first can be written, so they are rejected
+* @author Aidan Grupac
+*/
+public class StreamProcessor{
+
+	/**
+	* an interface for where a Stage sends the rows it produces
+	*/
+	private interface RowSink{
+
+		/**
+		* a method that takes the next row
+		* @param row the samples of the row, which the caller may reuse afterwards
+		* @throws IOException if the row can't be written
+		*/
+		void accept(int[] row) throws IOException;
+
+	}
+
+	/**
+	* a class representing one streaming operation, which receives rows in order and sends the rows it produces to the next Stage
+	*/
+	private abstract static class Stage implements RowSink{
+
+		/**
+		* where produced rows go
+		*/
+		protected RowSink next;
+		/**
+		* the dimensions of the input and output of the Stage
+		*/
+		protected int inHeight, inWidth, outHeight, outWidth;
+		/**
+		* the number of samples per Pixel
+		*/
+		protected int channels;
+		/**
+		* the number of input rows received so far
+		*/
+		protected int y;
+
+	}
+
+	/**
+	* the file read from and the file written to
+	*/
+	private final String input, output;
+	/**
+	* the operations, each followed by its parameters
+	*/
+	private final String[] operations;
+
+	/**
+	* a constructor that creates a StreamProcessor
+	* @param input the name of the input file
+	* @param output the name of the output file
+	* @param operations the operations, as ImagingApp takes them, plus format binary or format ascii
+	*/
+	public StreamProcessor(String input, String output, String[] operations){
+
+		this.input = input;
+		this.output = output;
+		this.operations = operations.clone();
+
+	}
+
+	/**
+	* a method that streams the input file through every operation into the output file
+	* @throws IOException if a file can't be read or written, in which case any output written so far is deleted
+	* @throws IllegalArgumentException if an operation is unknown, can't stream, falls outside the image, or makes it too large
+	*/
+	public void run() throws IOException{
+
+		try(PnmReader reader = new PnmReader(input)){
+			int channels = reader.isGrayscale() ? 1 : 3;
+			boolean binary = reader.isBinary();
+
+			//build the chain front to back, tracking the dimensions each Stage produces
+			Stage[] stages = new Stage[operations.length];
+			int count = 0;
+			int height = reader.getHeight(), width = reader.getWidth();
+			int i = 0;
+			while(i < operations.length){
+				String op = operations[i];
+				Stage stage;
+				switch(op){
+					case "crop":
+					require(i, 4);
+					stage = crop(Integer.parseInt(operations[i+1]), Integer.parseInt(operations[i+2]), Integer.parseInt(operations[i+3]), Integer.parseInt(operations[i+4]), height, width);
+					i += 5;
+					break;
+
+					case "flip":
+					require(i, 1);
+					if(operations[i+1].contains("vertical")){
+						throw new IllegalArgumentException("flip vertical needs the whole image and can't stream.");
+					}
+					stage = mirror(height, width);
+					i += 2;
+					break;
+
+					case "scale":
+					require(i, 1);
+					int factor = Integer.parseInt(operations[i+1]);
+					if(factor == 0){
+						throw new IllegalArgumentException("Scale factor can't be 0.");
+					}
+					//an enlargement past the largest int would wrap around to a small or negative size, so reject it before the output is opened
+					try{
+						stage = factor < 0 ? shrink(Math.negateExact(factor), height, width) : grow(factor, height, width);
+					}
+					catch(ArithmeticException e){
+						throw new IllegalArgumentException("Scale by " + factor + " is too large for a " + height + "x" + width + " image.");
+					}
+					i += 2;
+					break;
+
+					case "compress":
+					//a CompressedImage saves to exactly the Pixels it was made from, so compressing before saving changes nothing in the file
+					require(i, 2);
+					stage = null;
+					i += 3;
+					break;
+
+					case "format":
+					require(i, 1);
+					binary = operations[i+1].equals("binary");
+					stage = null;
+					i += 2;
+					break;
+
+					case "rotate":
+					throw new IllegalArgumentException("rotate needs the whole image and can't stream.");
+
+					default:
+					throw new IllegalArgumentException("Unknown operation " + op + ".");
+				}
+				if(stage != null){
+					stage.channels = channels;
+					stage.inHeight = height;
+					stage.inWidth = width;
+					height = stage.outHeight;
+					width = stage.outWidth;
+					if((long) width * channels > Integer.MAX_VALUE){
+						throw new IllegalArgumentException("A " + height + "x" + width + " image is too wide to stream.");
+					}
+					stages[count++] = stage;
+				}
+			}
+
+			//once the output is opened, a failure deletes it rather than leaving a file whose header promises rows that never came
+			PnmWriter writer = new PnmWriter(output, reader.isGrayscale(), binary, width, height, reader.getMaxval());
+			boolean done = false;
+			try{
+				try(writer){
+					RowSink sink = writer::writeRow;
+					for(int s = count - 1; s >= 0; s--){
+						stages[s].next = sink;
+						sink = stages[s];
+					}
+
+					//read a band of tile rows at a time, then pass each row down the chain
+					int[][] band = new int[TileAddress.SIZE][reader.getWidth() * channels];
+					for(int y = 0; y < reader.getHeight(); y += TileAddress.SIZE){
+						int rows = Math.min(TileAddress.SIZE, reader.getHeight() - y);
+						for(int r = 0; r < rows; r++){
+							reader.readRow(band[r]);
+						}
+						for(int r = 0; r < rows; r++){
+							sink.accept(band[r]);
+						}
+					}
+				}
+				done = true;
+			}
+			finally{
+				//also when a row runs out of memory, which no catch of exceptions would see
+				if(!done){
+					Files.deleteIfExists(Paths.get(output));
+				}
+			}
+		}
+
+	}
+
+	/**
+	* a method that checks an operation has enough parameters
+	* @param at the index of the operation
+	* @param count the number of parameters it takes
+	*/
+	private void require(int at, int count){
+
+		if(at + count >= operations.length){
+			throw new IllegalArgumentException("Incorrect number of parameters for " + operations[at] + ".");
+		}
+
+	}
+
+	/**
+	* a method that creates a Stage passing on only the rows and columns inside a rectangle
+	* @param topY the starting row
+	* @param topX the starting column
+	* @param height the height of the rectangle
+	* @param width the width of the rectangle
+	* @param inHeight the height of the input
+	* @param inWidth the width of the input
+	* @return a new Stage
+	*/
+	private static Stage crop(int topY, int topX, int height, int width, int inHeight, int inWidth){
+
+		if(topY < 0 || topX < 0 || height < 0 || width < 0 || topY + height > inHeight || topX + width > inWidth){
+			throw new IllegalArgumentException("Crop outside " + inHeight + "x" + inWidth + " image.");
+		}
+		Stage stage = new Stage(){
+			private int[] out;
+
+			public void accept(int[] row) throws IOException{
+
+				if(y >= topY && y < topY + height){
+					if(out == null){
+						out = new int[width * channels];
+					}
+					System.arraycopy(row, topX * channels, out, 0, width * channels);
+					next.accept(out);
+				}
+				y++;
+
+			}
+		};
+		stage.outHeight = height;
+		stage.outWidth = width;
+		return stage;
+
+	}
+
+	/**
+	* a method that creates a Stage reversing the order of the Pixels of each row
+	* @param inHeight the height of the input
+	* @param inWidth the width of the input
+	* @return a new Stage
+	*/
+	private static Stage mirror(int inHeight, int inWidth){
+
+		Stage stage = new Stage(){
+			private int[] out;
+
+			public void accept(int[] row) throws IOException{
+
+				if(out == null){
+					out = new int[inWidth * channels];
+				}
+				for(int x = 0; x < inWidth; x++){
+					System.arraycopy(row, x * channels, out, (inWidth - 1 - x) * channels, channels);
+				}
+				next.accept(out);
+				y++;
+
+			}
+		};
+		stage.outHeight = inHeight;
+		stage.outWidth = inWidth;
+		return stage;
+
+	}
+
+	/**
+	* a method that creates a Stage keeping every factor-th row and every factor-th Pixel of it, as Image.scale() does for a negative factor
+	* @param factor how many times smaller the output is
+	* @param inHeight the height of the input
+	* @param inWidth the width of the input
+	* @return a new Stage
+	*/
+	private static Stage shrink(int factor, int inHeight, int inWidth){
+
+		Stage stage = new Stage(){
+			private int[] out;
+
+			public void accept(int[] row) throws IOException{
+
+				if(y % factor == 0 && y / factor < outHeight){
+					if(out == null){
+						out = new int[outWidth * channels];
+					}
+					for(int x = 0; x < outWidth; x++){
+						System.arraycopy(row, x * factor * channels, out, x * channels, channels);
+					}
+					next.accept(out);
+				}
+				y++;
+
+			}
+		};
+		stage.outHeight = inHeight / factor;
+		stage.outWidth = inWidth / factor;
+		return stage;
+
+	}
+
+	/**
+	* a method that creates a Stage repeating every Pixel and every row factor times, as Image.scale() does for a positive factor
+	* @param factor how many times larger the output is
+	* @param inHeight the height of the input
+	* @param inWidth the width of the input
+	* @return a new Stage
+	* @throws ArithmeticException if the output would be more than the largest int Pixels high or wide
+	*/
+	private static Stage grow(int factor, int inHeight, int inWidth){
+
+		Stage stage = new Stage(){
+			private int[] out;
+
+			public void accept(int[] row) throws IOException{
+
+				if(out == null){
+					out = new int[outWidth * channels];
+				}
+				for(int x = 0; x < inWidth; x++){
+					for(int k = 0; k < factor; k++){
+						System.arraycopy(row, x * channels, out, (x * factor + k) * channels, channels);
+					}
+				}
+				for(int k = 0; k < factor; k++){
+					next.accept(out);
+				}
+				y++;
+
+			}
+		};
+		stage.outHeight = Math.multiplyExact(inHeight, factor);
+		stage.outWidth = Math.multiplyExact(inWidth, factor);
+		return stage;
+
+	}
+
+}
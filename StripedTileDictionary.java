@@ -0,0 +1,258 @@
+import java.util.Arrays;
+
+/**
+* A class that finds Tiles with equal contents while several threads add Tiles at once, for compressing an Image in parallel
+* a Tile is given as its 16 Pixels of samples, so no Tile or Pixel objects are made for Tiles that turn out to be repeats
+* the table is split into stripes by the high bits of the content hash, each an open-addressing table like TileDictionary's with its own lock,
+* so threads adding different contents rarely wait on each other
+* every Entry remembers the lowest index it was added with, so once all threads are done the canonical Tile of each content
+* is the first in tileArray order, the same one a single thread would choose, however the threads were scheduled
+* @author Aidan Grupac
+*/
+public class StripedTileDictionary{
+
+	/**
+	* a class representing one distinct content
+	*/
+	public static class Entry{
+
+		/**
+		* the samples of the content, 16 Pixels of 1 or 3 samples row by row
+		*/
+		private final int[] samples;
+		/**
+		* the lowest index the content was added with
+		*/
+		private int first;
+		/**
+		* the Tile built for the content, set by whoever builds it
+		*/
+		private Tile tile;
+
+		/**
+		* a constructor that creates an Entry
+		* @param samples a copy of the samples
+		* @param first the index it was added with
+		*/
+		private Entry(int[] samples, int first){
+
+			this.samples = samples;
+			this.first = first;
+
+		}
+
+		/**
+		* a getter that returns the samples of the content, which must not be changed
+		* @return samples the samples
+		*/
+		public int[] getSamples(){
+
+			return samples;
+
+		}
+
+		/**
+		* a getter that returns the lowest index the content was added with, final once every intern() has returned
+		* @return first the index of the canonical Tile
+		*/
+		public int getFirst(){
+
+			return first;
+
+		}
+
+		/**
+		* a getter that returns the Tile built for the content
+		* @return tile the Tile, or null if none has been set
+		*/
+		public Tile getTile(){
+
+			return tile;
+
+		}
+
+		/**
+		* a setter that stores the Tile built for the content
+		* @param tile the Tile
+		*/
+		public void setTile(Tile tile){
+
+			this.tile = tile;
+
+		}
+
+	}
+
+	/**
+	* a class representing one stripe: an open-addressing table guarded by its own lock
+	*/
+	private static class Stripe{
+
+		/**
+		* the content hash of the Entry in each slot
+		*/
+		private long[] hashes;
+		/**
+		* the Entry in each slot, null for an empty slot
+		*/
+		private Entry[] entries;
+		/**
+		* the number of Entries held
+		*/
+		private int size;
+
+		/**
+		* a constructor that creates an empty Stripe
+		* @param capacity the number of slots, a power of 2
+		*/
+		private Stripe(int capacity){
+
+			hashes = new long[capacity];
+			entries = new Entry[capacity];
+
+		}
+
+		/**
+		* a method that doubles the table and reinserts every Entry
+		*/
+		private void grow(){
+
+			long[] oldHashes = hashes;
+			Entry[] oldEntries = entries;
+			hashes = new long[oldEntries.length * 2];
+			entries = new Entry[oldEntries.length * 2];
+			int mask = entries.length - 1;
+			for(int i = 0; i < oldEntries.length; i++){
+				if(oldEntries[i] != null){
+					int slot = (int) oldHashes[i] & mask;
+					while(entries[slot] != null){
+						slot = (slot + 1) & mask;
+					}
+					hashes[slot] = oldHashes[i];
+					entries[slot] = oldEntries[i];
+				}
+			}
+
+		}
+
+	}
+
+	/**
+	* the number of bits of the hash choosing a stripe
+	*/
+	private static final int STRIPE_BITS = 6;
+
+	/**
+	* the stripes, chosen by the top STRIPE_BITS of the hash
+	*/
+	private final Stripe[] stripes = new Stripe[1 << STRIPE_BITS];
+
+	/**
+	* a constructor that creates an empty StripedTileDictionary
+	* @param expected the number of Tiles expected to be added, used to size the stripes
+	*/
+	public StripedTileDictionary(int expected){
+
+		//keep each stripe at most half full
+		int capacity = 16;
+		while(capacity * stripes.length < expected * 2){
+			capacity <<= 1;
+		}
+		for(int i = 0; i < stripes.length; i++){
+			stripes[i] = new Stripe(capacity);
+		}
+
+	}
+
+	/**
+	* a method that returns the Entry of a content, adding one if there is none yet, and lowers its first index to index if that is lower
+	* @param samples the samples of the Tile, 16 Pixels row by row, copied if a new Entry is made
+	* @param index the position of the Tile in tileArray
+	* @return the Entry of the content
+	*/
+	public Entry intern(int[] samples, int index){
+
+		long hash = hash(samples);
+		Stripe stripe = stripes[(int) (hash >>> (64 - STRIPE_BITS))];
+		synchronized(stripe){
+			int mask = stripe.entries.length - 1;
+			int slot = (int) hash & mask;
+			//linear probing, a matching hash is only a match once the samples are compared
+			while(stripe.entries[slot] != null){
+				Entry entry = stripe.entries[slot];
+				if(stripe.hashes[slot] == hash && Arrays.equals(entry.samples, samples)){
+					if(index < entry.first){
+						entry.first = index;
+					}
+					return entry;
+				}
+				slot = (slot + 1) & mask;
+			}
+
+			Entry entry = new Entry(samples.clone(), index);
+			stripe.hashes[slot] = hash;
+			stripe.entries[slot] = entry;
+			stripe.size++;
+			if(stripe.size * 2 > stripe.entries.length){
+				stripe.grow();
+			}
+			return entry;
+		}
+
+	}
+
+	/**
+	* a method that returns the number of distinct contents held
+	* @return the number of Entries
+	*/
+	public int size(){
+
+		int size = 0;
+		for(Stripe stripe : stripes){
+			synchronized(stripe){
+				size += stripe.size;
+			}
+		}
+		return size;
+
+	}
+
+	/**
+	* a method that returns every Entry, ordered by first index so the order doesn't depend on thread timing
+	* @return an array of the Entries
+	*/
+	public Entry[] toArray(){
+
+		Entry[] output = new Entry[size()];
+		int n = 0;
+		for(Stripe stripe : stripes){
+			synchronized(stripe){
+				for(Entry entry : stripe.entries){
+					if(entry != null){
+						output[n++] = entry;
+					}
+				}
+			}
+		}
+		Arrays.sort(output, (a, b) -> Integer.compare(a.first, b.first));
+		return output;
+
+	}
+
+	/**
+	* a method that hashes samples, mixing each in so the high bits that choose a stripe are as well spread as the low bits that choose a slot
+	* @param samples the samples
+	* @return the 64-bit hash
+	*/
+	private static long hash(int[] samples){
+
+		long hash = 0x9E3779B97F4A7C15L;
+		for(int sample : samples){
+			hash = (hash ^ sample) * 0xBF58476D1CE4E5B9L;
+			hash ^= hash >>> 31;
+		}
+		return hash;
+
+	}
+
+}
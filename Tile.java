@@ -1,118 +1,536 @@
-import java.io.PrintWriter;
-
-/**
-* A class representing a single Tile object, which makes up an Image
-* @author Aidan Grupac
-*/
-public class Tile{
-
-  /**
-  * a Pixel array containing the Pixels of a Tile
-  */
-  private Pixel[] block;
-
-  /**
-  * a contructor that creates a Tile and initializes its block to length 16
-  */
-  public Tile(){
-
-    block = new Pixel[16];
-
-  }
-
-  /**
-  * a getter that returns a Pixel at (y,x) coordinates
-  * @param y the row location within a Tile
-  * @param x the column location within a Tile
-  * @return the Pixel at coordinates (y,x)
-  */
-  public Pixel getPixel(int y, int x){
-
-    //create 4x4 coordinate plane
-      int[][] coordPlane = new int[4][4];
-      int position = 0;
-      //fill with elements corresponding to block index
-      for(int row = 0; row < 4; row++){
-        for(int column = 0; column < 4; column++){
-          coordPlane[row][column] = position;
-          position++;
-        }
-      }
-
-      return block[coordPlane[y][x]];
-
-  }
-
-  /**
-  * a setter that replaces a Pixel at (y,x) coordinates with Pixel p
-  * @param y the row location within a Tile
-  * @param x the column location within a Tile
-  * @param p the Pixel to insert
-  */
-  public void setPixel(int y, int x, Pixel p){
-
-    //create 4x4 coordinate plane
-    int[][] coordPlane = new int[4][4];
-    int position = 0;
-    //fill with elements corresponding to block index
-    for(int row = 0; row < 4; row++){
-      for(int column = 0; column < 4; column++){
-        coordPlane[row][column] = position;
-        position++;
-      }
-    }
-
-    block[coordPlane[y][x]] = p;
-
-  }
-
-  /**
-  * A method that checks if the current Tile is equal to another Object - shares contents but not memory location
-  * @param other the Object to be compared
-  * @return true/false depending on equality
-  */
-  public boolean equals(Object other){
-
-    //cast Object to Tile, convert both to String, compare with String.equals()
-    if(this.toString().equals(((Tile)other).toString())){
-      return true;
-    }
-    else{return false;}
-
-  }
-
-  /**
-  * A method that converts Pixel value(s) within to a String
-  * @return a comma-separated String of Pixel values
-  */
-  public String toString(){
-
-    String output = "";
-
-    for(Pixel pixel: block){
-      output += pixel.toString() + ",";
-    }
-
-    //remove final space and comma and return
-    return output.substring(0, output.length()-2);
-
-  }
-
-  /**
-  * A method that creates a deep copy of a Tile
-  * @return copy a new Tile object
-  */
-  public Tile clone(){
-
-    Tile copy = new Tile();
-
-      for(int i = 0; i < 16; i++){
-        Pixel p = this.block[i].clone();
-        copy.block[i] = p;
-      }
-
-    return copy;
-
-  }
-
-}
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+* A class representing a single Tile object, which makes up an Image
+* @author Aidan Grupac
+*/
+public class Tile{
+
+  /**
+  * a Pixel array containing the Pixels of a Tile, null when the Tile is packed
+  */
+  private Pixel[] block;
+  /**
+  * an integer array containing the packed values of the Pixels of a Tile (see Pixel.pack()), null when the Tile is not packed
+  */
+  private int[] packed;
+  /**
+  * boolean representing whether the Pixels of a Tile are grayscale or not
+  */
+  private boolean grayscale;
+
+  /**
+  * a contructor that creates a Tile and initializes its block to length 16
+  */
+  public Tile(){
+
+    block = new Pixel[16];
+
+  }
+
+  /**
+  * a constructor that creates a Tile storing either 16 Pixel objects or 16 packed integers
+  * packed Tiles only create Pixel objects when one is requested, and do not support color values above 255
+  * @param grayscale the color scheme of the Tile
+  * @param packed whether Pixels are stored as packed integers
+  */
+  public Tile(boolean grayscale, boolean packed){
+
+    this.grayscale = grayscale;
+    if(packed){
+      this.packed = new int[16];
+    }
+    else{
+      block = new Pixel[16];
+    }
+
+  }
+
+  /**
+  * a getter that returns whether a Tile stores packed integers rather than Pixel objects
+  * @return true if the Tile is packed
+  */
+  public boolean isPacked(){
+
+    return packed != null;
+
+  }
+
+  /**
+  * a getter that returns a Pixel at (y,x) coordinates
+  * a packed Tile returns a new Pixel holding the value, so changes to it are not stored
+  * @param y the row location within a Tile
+  * @param x the column location within a Tile
+  * @return the Pixel at coordinates (y,x)
+  */
+  public Pixel getPixel(int y, int x){
+
+    if(packed != null){
+      return Pixel.unpack(packed[TileAddress.offset(y, x)], grayscale);
+    }
+    return block[TileAddress.offset(y, x)];
+
+  }
+
+  /**
+  * a setter that replaces a Pixel at (y,x) coordinates with Pixel p
+  * @param y the row location within a Tile
+  * @param x the column location within a Tile
+  * @param p the Pixel to insert
+  */
+  public void setPixel(int y, int x, Pixel p){
+
+    if(packed != null){
+      packed[TileAddress.offset(y, x)] = p.pack();
+    }
+    else{
+      block[TileAddress.offset(y, x)] = p;
+    }
+
+  }
+
+  /**
+  * a method that copies a run of Pixels from one row of a Tile into an array
+  * @param y the row location within the Tile
+  * @param x the starting column location within the Tile
+  * @param length the number of Pixels to copy, at most 4 - x
+  * @param dest the array receiving the Pixels
+  * @param destPos the starting index within dest
+  */
+  public void getRow(int y, int x, int length, Pixel[] dest, int destPos){
+
+    if(packed != null){
+      int start = TileAddress.offset(y, x);
+      for(int i = 0; i < length; i++){
+        dest[destPos + i] = Pixel.unpack(packed[start + i], grayscale);
+      }
+    }
+    else{
+      System.arraycopy(block, TileAddress.offset(y, x), dest, destPos, length);
+    }
+
+  }
+
+  /**
+  * a method that replaces a run of Pixels in one row of a Tile with Pixels from an array
+  * @param y the row location within the Tile
+  * @param x the starting column location within the Tile
+  * @param length the number of Pixels to copy, at most 4 - x
+  * @param src the array holding the Pixels
+  * @param srcPos the starting index within src
+  */
+  public void setRow(int y, int x, int length, Pixel[] src, int srcPos){
+
+    if(packed != null){
+      int start = TileAddress.offset(y, x);
+      for(int i = 0; i < length; i++){
+        packed[start + i] = src[srcPos + i].pack();
+      }
+    }
+    else{
+      System.arraycopy(src, srcPos, block, TileAddress.offset(y, x), length);
+    }
+
+  }
+
+  /**
+  * a method that copies the samples (one per grayscale Pixel, three per color Pixel) of a run of Pixels from one row of a Tile into an array
+  * @param y the row location within the Tile
+  * @param x the starting column location within the Tile
+  * @param length the number of Pixels to copy, at most 4 - x
+  * @param dest the array receiving the samples
+  * @param destPos the starting index within dest
+  */
+  public void getSamples(int y, int x, int length, int[] dest, int destPos){
+
+    int start = TileAddress.offset(y, x);
+    if(grayscale){
+      for(int i = 0; i < length; i++){
+        dest[destPos + i] = packed != null ? packed[start + i] : (block[start + i] == null ? 0 : block[start + i].getValue()[0]);
+      }
+    }
+    else if(packed != null){
+      for(int i = 0; i < length; i++){
+        int value = packed[start + i];
+        dest[destPos++] = (value >> 16) & 0xFF;
+        dest[destPos++] = (value >> 8) & 0xFF;
+        dest[destPos++] = value & 0xFF;
+      }
+    }
+    else{
+      for(int i = 0; i < length; i++){
+        //an empty slot, such as one hanging over the edge of an Image, reads as black
+        if(block[start + i] == null){
+          dest[destPos++] = 0;
+          dest[destPos++] = 0;
+          dest[destPos++] = 0;
+          continue;
+        }
+        int[] value = block[start + i].getValue();
+        dest[destPos++] = value[0];
+        dest[destPos++] = value[1];
+        dest[destPos++] = value[2];
+      }
+    }
+
+  }
+
+  /**
+  * a method that replaces a run of Pixels in one row of a Tile with samples (one per grayscale Pixel, three per color Pixel) from an array
+  * @param y the row location within the Tile
+  * @param x the starting column location within the Tile
+  * @param length the number of Pixels to replace, at most 4 - x
+  * @param src the array holding the samples
+  * @param srcPos the starting index within src
+  */
+  public void setSamples(int y, int x, int length, int[] src, int srcPos){
+
+    int start = TileAddress.offset(y, x);
+    if(grayscale){
+      for(int i = 0; i < length; i++){
+        if(packed != null){
+          packed[start + i] = src[srcPos + i];
+        }
+        else{
+          block[start + i] = new Pixel(src[srcPos + i]);
+        }
+      }
+    }
+    else if(packed != null){
+      for(int i = 0; i < length; i++){
+        packed[start + i] = (src[srcPos] << 16) | (src[srcPos + 1] << 8) | src[srcPos + 2];
+        srcPos += 3;
+      }
+    }
+    else{
+      for(int i = 0; i < length; i++){
+        block[start + i] = new Pixel(src[srcPos], src[srcPos + 1], src[srcPos + 2]);
+        srcPos += 3;
+      }
+    }
+
+  }
+
+  /**
+  * A method that computes a 64-bit hash of the values of the Pixels in a Tile, equal for Tiles with equal contents whether packed or not
+  * @return the hash
+  */
+  public long contentHash(){
+
+    long hash = grayscale ? 1 : 3;
+    for(int i = 0; i < 16; i++){
+      if(packed != null){
+        hash = mix(hash, packed[i]);
+      }
+      else if(block[i] == null){
+        //an empty slot hashes like a black Pixel, as it compares
+        hash = mix(hash, 0);
+      }
+      else if(grayscale){
+        hash = mix(hash, block[i].getValue()[0]);
+      }
+      else{
+        //pack 8-bit color the same way a packed Tile does so both hash alike
+        int[] value = block[i].getValue();
+        if(value[0] <= 255 && value[1] <= 255 && value[2] <= 255){
+          hash = mix(hash, (value[0] << 16) | (value[1] << 8) | value[2]);
+        }
+        else{
+          hash = mix(mix(mix(hash, value[0] + 0x1000000), value[1]), value[2]);
+        }
+      }
+    }
+    return hash;
+
+  }
+
+  /**
+  * A method that folds one value into a running hash
+  * @param hash the hash so far
+  * @param value the value to add
+  * @return the new hash
+  */
+  private static long mix(long hash, int value){
+
+    hash = (hash ^ value) * 0x9E3779B97F4A7C15L;
+    return hash ^ (hash >>> 29);
+
+  }
+
+  /**
+  * A method that checks whether two Tiles hold the same Pixel values, comparing numbers rather than Strings
+  * @param other the Tile to compare with
+  * @return true if every Pixel has the same value
+  */
+  public boolean contentEquals(Tile other){
+
+    if(other == this){
+      return true;
+    }
+    if(other.grayscale != this.grayscale){
+      return false;
+    }
+    if(this.packed != null && other.packed != null){
+      return Arrays.equals(this.packed, other.packed);
+    }
+    for(int i = 0; i < 16; i++){
+      //aliased Pixels are equal without looking at them
+      if(this.block != null && other.block != null && this.block[i] == other.block[i]){
+        continue;
+      }
+      int channels = this.channelsAt(i);
+      if(channels != other.channelsAt(i)){
+        return false;
+      }
+      for(int k = 0; k < channels; k++){
+        if(this.sampleAt(i, k) != other.sampleAt(i, k)){
+          return false;
+        }
+      }
+    }
+    return true;
+
+  }
+
+  /**
+  * A method that returns the number of samples of the Pixel at a block index
+  * @param index the block index, 0-15
+  * @return 1 for grayscale, 3 for color
+  */
+  private int channelsAt(int index){
+
+    if(packed != null || block[index] == null){
+      return grayscale ? 1 : 3;
+    }
+    return block[index].getValue().length;
+
+  }
+
+  /**
+  * A method that returns one sample of the Pixel at a block index without creating a Pixel for packed Tiles
+  * @param index the block index, 0-15, where an empty slot reads as black
+  * @param channel 0 for grayscale or red, 1 for green, 2 for blue
+  * @return the sample
+  */
+  private int sampleAt(int index, int channel){
+
+    if(packed == null && block[index] == null){
+      return 0;
+    }
+    if(packed == null){
+      return block[index].getValue()[channel];
+    }
+    if(grayscale){
+      return packed[index];
+    }
+    return (packed[index] >> (16 - 8 * channel)) & 0xFF;
+
+  }
+
+  /**
+  * A method that counts the distinct Pixel objects in a Tile, so aliased Pixels count once
+  * @return the number of distinct Pixels, 16 for a packed Tile
+  */
+  public int distinctPixels(){
+
+    if(packed != null){
+      return 16;
+    }
+    int count = 0;
+    for(int i = 0; i < 16; i++){
+      boolean seen = block[i] == null;
+      for(int j = 0; j < i && !seen; j++){
+        seen = block[j] == block[i];
+      }
+      if(!seen){
+        count++;
+      }
+    }
+    return count;
+
+  }
+
+  /**
+  * A method that estimates how many bytes of heap a Tile occupies, counting each distinct Pixel once
+  * @return the estimated size in bytes
+  */
+  public long footprint(){
+
+    //tile object plus its storage array
+    long bytes = 24 + 80;
+    if(packed == null){
+      for(int i = 0; i < 16; i++){
+        Pixel pixel = block[i];
+        if(pixel == null){
+          continue;
+        }
+        //skip pixels already counted through an alias within this tile
+        boolean counted = false;
+        for(int j = 0; j < i; j++){
+          if(block[j] == pixel){
+            counted = true;
+            break;
+          }
+        }
+        if(!counted){
+          bytes += Pixel.footprint(pixel.getValue().length == 1);
+        }
+      }
+    }
+    return bytes;
+
+  }
+
+  /**
+  * A method that checks if the current Tile is equal to another Object - shares contents but not memory location
+  * @param other the Object to be compared
+  * @return true/false depending on equality
+  */
+  public boolean equals(Object other){
+
+    //compare Pixel values directly, see contentEquals()
+    if(other instanceof Tile){
+      return contentEquals((Tile) other);
+    }
+    else{return false;}
+
+  }
+
+  /**
+  * A method that returns a hash code consistent with equals(), built from contentHash()
+  * @return the hash code
+  */
+  public int hashCode(){
+
+    long hash = contentHash();
+    return (int) (hash ^ (hash >>> 32));
+
+  }
+
+  /**
+  * A method that compares two arrays of Tiles element by element, stopping at the first difference
+  * large arrays can be split into chunks compared on several threads, stopping all of them at the first difference
+  * @param a the first array
+  * @param b the second array
+  * @param parallel whether to compare chunks of the arrays concurrently
+  * @return true if the arrays have the same length and every pair of Tiles is equal
+  */
+  public static boolean contentEquals(Tile[] a, Tile[] b, boolean parallel){
+
+    if(a.length != b.length){
+      return false;
+    }
+    int chunk = 4096;
+    if(!parallel || a.length <= chunk){
+      return rangeEquals(a, b, 0, a.length);
+    }
+    int chunks = (a.length + chunk - 1) / chunk;
+    return IntStream.range(0, chunks).parallel()
+      .allMatch(c -> rangeEquals(a, b, c * chunk, Math.min(a.length, (c + 1) * chunk)));
+
+  }
+
+  /**
+  * A method that compares part of two arrays of Tiles
+  * @param a the first array
+  * @param b the second array
+  * @param from the first index compared
+  * @param to one past the last index compared
+  * @return true if every pair of Tiles in the range is equal
+  */
+  private static boolean rangeEquals(Tile[] a, Tile[] b, int from, int to){
+
+    for(int i = from; i < to; i++){
+      if(a[i] == b[i]){
+        continue;
+      }
+      if(a[i] == null || b[i] == null || !a[i].contentEquals(b[i])){
+        return false;
+      }
+    }
+    return true;
+
+  }
+
+  /**
+  * A method that combines the hash codes of an array of Tiles
+  * @param tiles the array
+  * @return a hash code consistent with contentEquals(Tile[], Tile[], boolean)
+  */
+  public static int hashCode(Tile[] tiles){
+
+    int hash = 1;
+    for(Tile tile : tiles){
+      hash = 31 * hash + (tile == null ? 0 : tile.hashCode());
+    }
+    return hash;
+
+  }
+
+  /**
+  * A method that converts Pixel value(s) within to a String
+  * @return a comma-separated String of Pixel values
+  */
+  public String toString(){
+
+    StringBuilder output = new StringBuilder();
+
+    for(int i = 0; i < 16; i++){
+      if(i > 0){
+        output.append(',');
+      }
+      Pixel pixel = packed != null ? Pixel.unpack(packed[i], grayscale) : block[i];
+      output.append(pixel);
+    }
+
+    return output.toString();
+
+  }
+
+  /**
+  * A method that creates a copy of a Tile with its Pixels rearranged, used to rotate or mirror a whole Tile at once
+  * @param order for each position of the new Tile, the position within this Tile its Pixel comes from (see TileAddress.offset())
+  * @return a new Tile
+  */
+  public Tile permute(int[] order){
+
+    Tile copy = new Tile(this.grayscale, this.packed != null);
+
+    for(int i = 0; i < 16; i++){
+      if(packed != null){
+        copy.packed[i] = packed[order[i]];
+      }
+      else if(block[order[i]] != null){
+        copy.block[i] = block[order[i]].clone();
+      }
+    }
+
+    return copy;
+
+  }
+
+  /**
+  * A method that creates a deep copy of a Tile
+  * @return copy a new Tile object
+  */
+  public Tile clone(){
+
+    Tile copy = new Tile(this.grayscale, this.packed != null);
+
+    if(this.packed != null){
+      System.arraycopy(this.packed, 0, copy.packed, 0, 16);
+    }
+    else{
+      for(int i = 0; i < 16; i++){
+        if(this.block[i] != null){
+          copy.block[i] = this.block[i].clone();
+        }
+      }
+    }
+
+    return copy;
+
+  }
+
+}
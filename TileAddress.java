@@ -0,0 +1,94 @@
+/**
+* A class that maps (y,x) coordinates of an Image to a Tile index and a position within that Tile using arithmetic only
+* @author Aidan Grupac
+*/
+public class TileAddress{
+
+	/**
+	* the number of rows and columns of Pixels in a Tile
+	*/
+	public static final int SIZE = 4;
+
+	/**
+	* a private constructor, TileAddress only holds static helpers
+	*/
+	private TileAddress(){
+
+	}
+
+	/**
+	* a method that returns how many Tiles make up one row of Tiles in an Image, counting a Tile that hangs over the right edge
+	* @param width the width of the Image
+	* @return the number of Tiles across
+	*/
+	public static int tilesAcross(int width){
+
+		return (width + SIZE - 1) / SIZE;
+
+	}
+
+	/**
+	* a method that returns how many rows of Tiles make up an Image, counting a row that hangs over the bottom edge
+	* @param height the height of the Image
+	* @return the number of Tiles down
+	*/
+	public static int tilesDown(int height){
+
+		return (height + SIZE - 1) / SIZE;
+
+	}
+
+	/**
+	* a method that returns the total number of Tiles needed by an Image
+	* @param height the height of the Image
+	* @param width the width of the Image
+	* @return the length of the Image's tileArray
+	*/
+	public static int tileCount(int height, int width){
+
+		return tilesDown(height) * tilesAcross(width);
+
+	}
+
+	/**
+	* a method that returns the index within tileArray of the Tile holding (y,x)
+	* @param y the row location within the Image
+	* @param x the column location within the Image
+	* @param width the width of the Image
+	* @return the Tile index
+	*/
+	public static int tileIndex(int y, int x, int width){
+
+		return (y >> 2) * tilesAcross(width) + (x >> 2);
+
+	}
+
+	/**
+	* a method that returns the index within a Tile's block of the Pixel at (y,x)
+	* @param y the row location within the Image or Tile
+	* @param x the column location within the Image or Tile
+	* @return the block index, 0-15
+	*/
+	public static int offset(int y, int x){
+
+		return ((y & 3) << 2) | (x & 3);
+
+	}
+
+	/**
+	* a method that checks whether (y,x) falls within an Image with the given dimensions, rather than on the unused part of an edge Tile
+	* @param y the row location within the Image
+	* @param x the column location within the Image
+	* @param height the height of the Image
+	* @param width the width of the Image
+	* @throws IndexOutOfBoundsException if (y,x) is outside the Image
+	*/
+	public static void check(int y, int x, int height, int width){
+
+		if(y < 0 || x < 0 || y >= height || x >= width){
+			throw new IndexOutOfBoundsException("(" + y + "," + x + ") outside " + height + "x" + width + " image");
+		}
+
+	}
+
+}
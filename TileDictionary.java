@@ -0,0 +1,126 @@
+/**
+* A class that finds Tiles with equal contents in expected constant time, keyed by Tile.contentHash() and verified with Tile.contentEquals()
+* @author Aidan Grupac
+*/
+public class TileDictionary{
+
+	/**
+	* the content hash of the Tile in each slot
+	*/
+	private long[] hashes;
+	/**
+	* the canonical Tile in each slot, null for an empty slot
+	*/
+	private Tile[] tiles;
+	/**
+	* the number of canonical Tiles held
+	*/
+	private int size;
+
+	/**
+	* a constructor that creates an empty TileDictionary
+	* @param expected the number of Tiles expected to be added, used to size the table
+	*/
+	public TileDictionary(int expected){
+
+		//keep the table at most half full
+		int capacity = 16;
+		while(capacity < expected * 2){
+			capacity <<= 1;
+		}
+		hashes = new long[capacity];
+		tiles = new Tile[capacity];
+
+	}
+
+	/**
+	* a method that returns the canonical Tile with the same contents as tile, adding tile as the canonical one if there is none yet
+	* no Tile is changed; an empty slot compares as black, so a caller that puts the canonical Tile at other positions must build it with no empty slots itself
+	* @param tile the Tile to look up
+	* @return the first Tile added with equal contents
+	*/
+	public Tile intern(Tile tile){
+
+		long hash = tile.contentHash();
+		int mask = tiles.length - 1;
+		int slot = spread(hash) & mask;
+		//linear probing, a matching hash is only a match once the contents are compared
+		while(tiles[slot] != null){
+			if(hashes[slot] == hash && tiles[slot].contentEquals(tile)){
+				return tiles[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		hashes[slot] = hash;
+		tiles[slot] = tile;
+		size++;
+		if(size * 2 > tiles.length){
+			grow();
+		}
+		return tile;
+
+	}
+
+	/**
+	* a getter that returns the number of canonical Tiles held
+	* @return size the number of distinct Tile contents seen
+	*/
+	public int size(){
+
+		return size;
+
+	}
+
+	/**
+	* a method that returns the canonical Tiles held, in no particular order
+	* @return an array of the distinct Tiles
+	*/
+	public Tile[] toArray(){
+
+		Tile[] output = new Tile[size];
+		int n = 0;
+		for(Tile tile : tiles){
+			if(tile != null){
+				output[n++] = tile;
+			}
+		}
+		return output;
+
+	}
+
+	/**
+	* a method that doubles the table and reinserts every Tile
+	*/
+	private void grow(){
+
+		long[] oldHashes = hashes;
+		Tile[] oldTiles = tiles;
+		hashes = new long[oldTiles.length * 2];
+		tiles = new Tile[oldTiles.length * 2];
+		int mask = tiles.length - 1;
+		for(int i = 0; i < oldTiles.length; i++){
+			if(oldTiles[i] != null){
+				int slot = spread(oldHashes[i]) & mask;
+				while(tiles[slot] != null){
+					slot = (slot + 1) & mask;
+				}
+				hashes[slot] = oldHashes[i];
+				tiles[slot] = oldTiles[i];
+			}
+		}
+
+	}
+
+	/**
+	* a method that folds a 64-bit hash into a table index
+	* @param hash the content hash
+	* @return a well mixed integer
+	*/
+	private static int spread(long hash){
+
+		return (int) (hash ^ (hash >>> 32));
+
+	}
+
+}